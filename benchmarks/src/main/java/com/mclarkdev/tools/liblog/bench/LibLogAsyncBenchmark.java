@@ -0,0 +1,60 @@
+package com.mclarkdev.tools.liblog.bench;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.mclarkdev.tools.liblog.LibLog;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage;
+import com.mclarkdev.tools.liblog.lib.LibLogOverflowPolicy;
+import com.mclarkdev.tools.liblog.lib.LibLogWaitStrategy;
+
+/**
+ * LibLog // LibLogAsyncBenchmark
+ * 
+ * Samples producer latency with the ring buffer dispatcher enabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LibLogAsyncBenchmark {
+
+	@Param({ "spin", "yield", "park" })
+	public String wait;
+
+	@Param({ "block", "drop" })
+	public String overflow;
+
+	private LibLogNullWriter writer;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		LibLog.cfg().removeLogger(null);
+		writer = new LibLogNullWriter(URI.create("null:/"));
+		LibLog.cfg().addLogger(writer);
+
+		LibLog.cfg().enableAsync(65536, //
+				LibLogWaitStrategy.parse(wait), LibLogOverflowPolicy.parse(overflow));
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+		LibLog.cfg().disableAsync();
+		LibLog.cfg().removeLogger(writer);
+	}
+
+	@Benchmark
+	public LibLogMessage logF() {
+		return LibLog._logF("Benchmark %s %d", "message", 42);
+	}
+}
@@ -0,0 +1,85 @@
+package com.mclarkdev.tools.liblog.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.mclarkdev.tools.liblog.LibLog;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
+
+/**
+ * LibLog // LibLogBenchmark
+ * 
+ * Measures the LibLog entry points with discarding writers attached.
+ */
+@State(Scope.Benchmark)
+public class LibLogBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean debug;
+
+	@Param({ "1", "3" })
+	public int writers;
+
+	private final List<LibLogNullWriter> nullWriters = new ArrayList<>();
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+
+		// Replace all writers with null writers
+		LibLog.cfg().removeLogger(null);
+		for (int x = 0; x < writers; x++) {
+			LibLogNullWriter writer = new LibLogNullWriter(URI.create(//
+					(debug) ? "null:/?debug" : "null:/"));
+			LibLog.cfg().addLogger(writer);
+			nullWriters.add(writer);
+		}
+
+		// Facility which filters out debug messages
+		LibLog.cfg().setLevel("disabled", LogLevel.INFO);
+
+		// Load a localized message code
+		LibLog.cfg().loadStrings(new ByteArrayInputStream(//
+				"B0001=Benchmark %s %d".getBytes(StandardCharsets.ISO_8859_1)));
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+		for (LibLogNullWriter writer : nullWriters) {
+			LibLog.cfg().removeLogger(writer);
+		}
+		nullWriters.clear();
+	}
+
+	@Benchmark
+	public LibLogMessage log() {
+		return LibLog._log("Benchmark message.");
+	}
+
+	@Benchmark
+	public LibLogMessage logF() {
+		return LibLog._logF("Benchmark %s %d", "message", 42);
+	}
+
+	@Benchmark
+	public LibLogMessage clogF() {
+		return LibLog._clogF("B0001", "message", 42);
+	}
+
+	@Benchmark
+	public LibLogMessage debugDisabled() {
+		return LibLog.debugF("disabled", "Benchmark %s %d", "message", 42);
+	}
+}
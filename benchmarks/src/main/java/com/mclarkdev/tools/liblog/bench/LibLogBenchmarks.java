@@ -0,0 +1,56 @@
+package com.mclarkdev.tools.liblog.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * LibLog // LibLogBenchmarks
+ * 
+ * Runs the benchmark suite at each thread count with the allocation profiler.
+ * 
+ * Accepts the standard JMH command line; passing -t runs a single thread count.
+ */
+public class LibLogBenchmarks {
+
+	private static final int[] THREADS = { 1, 4, 16 };
+
+	/**
+	 * Run the benchmarks.
+	 * 
+	 * @param args JMH command line options
+	 * @throws RunnerException            failed to run the benchmarks
+	 * @throws CommandLineOptionException failed to parse the command line
+	 */
+	public static void main(String[] args) //
+			throws RunnerException, CommandLineOptionException {
+
+		CommandLineOptions cmd = new CommandLineOptions(args);
+
+		int[] threads = (cmd.getThreads().hasValue()) ? //
+				new int[] { cmd.getThreads().get() } : THREADS;
+
+		for (int t : threads) {
+			OptionsBuilder opts = new OptionsBuilder();
+			opts.parent(cmd);
+			opts.threads(t);
+			opts.addProfiler(GCProfiler.class);
+			opts.resultFormat(ResultFormatType.JSON);
+			opts.result(String.format("liblog-bench-%dt.json", t));
+
+			if (cmd.getIncludes().isEmpty()) {
+				opts.include(LibLogBenchmarks.class.getPackage().getName() + ".*");
+			}
+
+			if (!cmd.getForkCount().hasValue()) {
+				opts.forks(1);
+			}
+
+			new Runner(opts.build()).run();
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.mclarkdev.tools.liblog.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.mclarkdev.tools.liblog.LibLog;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
+
+/**
+ * LibLog // LibLogMessageBenchmark
+ * 
+ * Measures message construction, formatting and log line rendering.
+ * 
+ * Rendered lines are memoized, so each render is measured on a new message.
+ */
+@State(Scope.Thread)
+public class LibLogMessageBenchmark {
+
+	private static final Object[] ARGS = { "message", 42 };
+
+	@Benchmark
+	public LibLogMessage create() {
+		return new LibLogMessage(LogLevel.INFO, "bench", "Benchmark %s %d", ARGS, null);
+	}
+
+	@Benchmark
+	public String format() {
+		return LibLog.f("Benchmark %s %d", ARGS);
+	}
+
+	@Benchmark
+	public String formatBaseline() {
+		return String.format("Benchmark %s %d", ARGS);
+	}
+
+	@Benchmark
+	public String buildLogLine() {
+		return create().buildLogLine();
+	}
+
+	@Benchmark
+	public String buildDebugLine() {
+		return create().buildDebugLine();
+	}
+
+	@Benchmark
+	public byte[] buildBytes() {
+		return create().buildBytes(false);
+	}
+}
@@ -0,0 +1,36 @@
+package com.mclarkdev.tools.liblog.bench;
+
+import java.net.URI;
+
+import com.mclarkdev.tools.liblog.lib.LibLogMessage;
+import com.mclarkdev.tools.liblog.lib.LibLogWriter;
+
+/**
+ * LibLog // LibLogNullWriter
+ * 
+ * Renders and discards all messages, used to measure the cost of the logging
+ * front end.
+ */
+public class LibLogNullWriter extends LibLogWriter {
+
+	public static String scheme() {
+		return "null";
+	}
+
+	public LibLogNullWriter(URI uri) {
+		super(uri);
+	}
+
+	@Override
+	public void setup() {
+	}
+
+	@Override
+	public void write(LibLogMessage message) {
+		message.buildBytes(debug);
+	}
+
+	@Override
+	public void shutdown() {
+	}
+}
@@ -0,0 +1,46 @@
+package com.mclarkdev.tools.liblog.bench;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.mclarkdev.tools.liblog.lib.LibLogClock;
+import com.mclarkdev.tools.liblog.lib.LibLogTimestamp;
+
+/**
+ * LibLog // LibLogTimestampBenchmark
+ * 
+ * Measures time-stamp rendering with a frozen clock (cached second) and with a
+ * clock which advances one second on every read.
+ */
+@State(Scope.Benchmark)
+public class LibLogTimestampBenchmark {
+
+	@Param({ "frozen", "rolling" })
+	public String clock;
+
+	private final AtomicLong time = new AtomicLong(1700000000000L);
+
+	@Setup(Level.Trial)
+	public void setup() {
+		LibLogTimestamp.setClock(clock.equals("frozen") ? //
+				(LibLogClock) time::get : //
+				(LibLogClock) () -> time.addAndGet(1000));
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+		LibLogTimestamp.setClock(null);
+	}
+
+	@Benchmark
+	public String format() {
+		return LibLogTimestamp.format(LibLogTimestamp.now());
+	}
+}
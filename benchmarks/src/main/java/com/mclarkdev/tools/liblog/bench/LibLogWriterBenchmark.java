@@ -0,0 +1,168 @@
+package com.mclarkdev.tools.liblog.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.file.Files;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.mclarkdev.tools.liblog.LibLog;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
+import com.mclarkdev.tools.liblog.lib.LibLogWriter;
+import com.mclarkdev.tools.liblog.writer.LibLogConsoleWriter;
+import com.mclarkdev.tools.liblog.writer.LibLogFileWriter;
+import com.mclarkdev.tools.liblog.writer.LibLogMMapWriter;
+import com.mclarkdev.tools.liblog.writer.LibLogTCPWriter;
+import com.mclarkdev.tools.liblog.writer.LibLogUDPWriter;
+
+/**
+ * LibLog // LibLogWriterBenchmark
+ * 
+ * Measures each of the built-in writers against a sink which discards the
+ * output. The console is redirected to a null stream, the file writers target
+ * a temporary directory, and the network writers send to local sockets which
+ * are never read.
+ */
+@State(Scope.Benchmark)
+public class LibLogWriterBenchmark {
+
+	private static final OutputStream NULL = new OutputStream() {
+
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	@Param({ "console", "file", "mmap", "tcp", "udp", "udp-batch" })
+	public String scheme;
+
+	@Param({ "false", "true" })
+	public boolean debug;
+
+	private PrintStream stdout;
+
+	private File tmpDir;
+
+	private ServerSocket tcpSink;
+
+	private DatagramSocket udpSink;
+
+	private LibLogWriter writer;
+
+	private LibLogMessage message;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+
+		// Nothing should reach the configured writers
+		LibLog.cfg().removeLogger(null);
+
+		String query = (debug) ? "?debug" : "";
+		switch (scheme) {
+		case "console":
+			stdout = System.out;
+			System.setOut(new PrintStream(NULL));
+			writer = new LibLogConsoleWriter(URI.create("console:/" + query));
+			break;
+
+		case "file":
+			tmpDir = Files.createTempDirectory("liblog-bench").toFile();
+			writer = new LibLogFileWriter(URI.create(tmpDir.toURI() + query));
+			break;
+
+		case "mmap":
+			tmpDir = Files.createTempDirectory("liblog-bench").toFile();
+			writer = new LibLogMMapWriter(URI.create("mmap:" + tmpDir.toURI().getPath() + query));
+			break;
+
+		case "tcp":
+			tcpSink = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			startDiscard(tcpSink);
+			writer = new LibLogTCPWriter(URI.create(//
+					"tcp://127.0.0.1:" + tcpSink.getLocalPort() + "/" + query));
+			break;
+
+		case "udp":
+			udpSink = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+			writer = new LibLogUDPWriter(URI.create(//
+					"udp://127.0.0.1:" + udpSink.getLocalPort() + "/" + query));
+			break;
+
+		case "udp-batch":
+			udpSink = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+			writer = new LibLogUDPWriter(URI.create(//
+					"udp://127.0.0.1:" + udpSink.getLocalPort() + "/?batch=1400" + query.replace('?', '&')));
+			break;
+
+		default:
+			throw new IllegalArgumentException("Unknown scheme: " + scheme);
+		}
+
+		writer.setup();
+		message = new LibLogMessage(LogLevel.INFO, "bench", "Benchmark message.", null);
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() throws IOException {
+		writer.shutdown();
+
+		if (stdout != null) {
+			System.setOut(stdout);
+		}
+
+		if (tcpSink != null) {
+			tcpSink.close();
+		}
+
+		if (udpSink != null) {
+			udpSink.close();
+		}
+
+		if (tmpDir != null) {
+			for (File file : tmpDir.listFiles()) {
+				file.delete();
+			}
+			tmpDir.delete();
+		}
+	}
+
+	@Benchmark
+	public void write() {
+		writer.write(message);
+	}
+
+	private static void startDiscard(final ServerSocket server) {
+		Thread discard = new Thread("LibLogBenchmark:Discard") {
+			public void run() {
+				byte[] buffer = new byte[64 * 1024];
+				try (Socket client = server.accept(); //
+						InputStream in = client.getInputStream()) {
+					while (in.read(buffer) >= 0) {
+					}
+				} catch (IOException e) {
+				}
+			}
+		};
+		discard.setDaemon(true);
+		discard.start();
+	}
+}
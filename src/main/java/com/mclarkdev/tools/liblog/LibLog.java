@@ -2,12 +2,15 @@ package com.mclarkdev.tools.liblog;
 
 import java.util.IllegalFormatException;
 
+import com.mclarkdev.tools.liblog.lib.LibLogAsyncDispatcher;
+import com.mclarkdev.tools.liblog.lib.LibLogCatalog;
 import com.mclarkdev.tools.liblog.lib.LibLogConfig;
+import com.mclarkdev.tools.liblog.lib.LibLogFormat;
 import com.mclarkdev.tools.liblog.lib.LibLogMessage;
 import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
-import com.mclarkdev.tools.liblog.lib.LibLogWriter;
 import com.mclarkdev.tools.liblog.writer.LibLogConsoleWriter;
 import com.mclarkdev.tools.liblog.writer.LibLogFileWriter;
+import com.mclarkdev.tools.liblog.writer.LibLogMMapWriter;
 import com.mclarkdev.tools.liblog.writer.LibLogTCPWriter;
 import com.mclarkdev.tools.liblog.writer.LibLogUDPWriter;
 
@@ -28,6 +31,7 @@ public class LibLog {
 		// Register default loggers
 		cfg.registerLogger(LibLogConsoleWriter.class);
 		cfg.registerLogger(LibLogFileWriter.class);
+		cfg.registerLogger(LibLogMMapWriter.class);
 		cfg.registerLogger(LibLogUDPWriter.class);
 		cfg.registerLogger(LibLogTCPWriter.class);
 	}
@@ -36,10 +40,10 @@ public class LibLog {
 	 * Log a message.
 	 * 
 	 * @param message the message to log
-	 * @return the logged message
+	 * @return the logged message, not logged if disabled or limited
 	 */
 	public static LibLogMessage _log(String message) {
-		return log(new LibLogMessage(LogLevel.INFO, cfg.defaultLog(), message, null));
+		return log(LogLevel.INFO, cfg.defaultLog(), message, null);
 	}
 
 	/**
@@ -47,10 +51,10 @@ public class LibLog {
 	 * 
 	 * @param message the message to log
 	 * @param e       the exception to log
-	 * @return the log message
+	 * @return the log message, not logged if disabled or limited
 	 */
 	public static LibLogMessage _log(String message, Throwable e) {
-		return log(new LibLogMessage(LogLevel.WARN, cfg.defaultLog(), message, e));
+		return log(LogLevel.WARN, cfg.defaultLog(), message, e);
 	}
 
 	/**
@@ -58,10 +62,10 @@ public class LibLog {
 	 * 
 	 * @param facility the log message facility
 	 * @param message  the message to log
-	 * @return the log message
+	 * @return the log message, not logged if disabled or limited
 	 */
 	public static LibLogMessage log(String facility, String message) {
-		return log(new LibLogMessage(LogLevel.INFO, facility, message, null));
+		return log(LogLevel.INFO, facility, message, null);
 	}
 
 	/**
@@ -70,10 +74,10 @@ public class LibLog {
 	 * @param facility the log message facility
 	 * @param message  the message to log
 	 * @param e        the exception to log
-	 * @return the log message
+	 * @return the log message, not logged if disabled or limited
 	 */
 	public static LibLogMessage log(String facility, String message, Throwable e) {
-		return log(new LibLogMessage(LogLevel.WARN, facility, message, e));
+		return log(LogLevel.WARN, facility, message, e);
 	}
 
 	/**
@@ -81,10 +85,10 @@ public class LibLog {
 	 * 
 	 * @param format the log message format
 	 * @param args   the log message arguments
-	 * @return the log message
+	 * @return the log message, not logged if disabled or limited
 	 */
 	public static LibLogMessage _logF(String format, Object... args) {
-		return log(new LibLogMessage(LogLevel.INFO, cfg.defaultLog(), f(format, args), null));
+		return logF(LogLevel.INFO, cfg.defaultLog(), format, args);
 	}
 
 	/**
@@ -93,20 +97,223 @@ public class LibLog {
 	 * @param facility the log message facility
 	 * @param format   the log message format
 	 * @param args     the log message arguments
-	 * @return the log message
+	 * @return the log message, not logged if disabled or limited
 	 */
 	public static LibLogMessage logF(String facility, String format, Object... args) {
-		return log(new LibLogMessage(LogLevel.INFO, facility, f(format, args), null));
+		return logF(LogLevel.INFO, facility, format, args);
+	}
+
+	/**
+	 * Log a message at the given level.
+	 * 
+	 * @param level    the log message level
+	 * @param facility the log message facility
+	 * @param message  the message to log
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage log(LogLevel level, String facility, String message) {
+		return log(level, facility, message, null);
+	}
+
+	/**
+	 * Log a message at the given level.
+	 * 
+	 * @param level    the log message level
+	 * @param facility the log message facility
+	 * @param message  the message to log
+	 * @param e        the exception to log
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage log(LogLevel level, String facility, String message, Throwable e) {
+		if (!cfg.isEnabled(level, facility)) {
+			return skipped(level, facility, message, null, e);
+		}
+		return submit(level, facility, message, null, e);
+	}
+
+	/**
+	 * Log a message at the given level.
+	 * 
+	 * The message is only formatted if the level is enabled, and then only once
+	 * for all writers.
+	 * 
+	 * @param level    the log message level
+	 * @param facility the log message facility
+	 * @param format   the log message format
+	 * @param args     the log message arguments
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage logF(LogLevel level, String facility, String format, Object... args) {
+		if (!cfg.isEnabled(level, facility)) {
+			return skipped(level, facility, format, args, null);
+		}
+		return submit(level, facility, format, args, null);
+	}
+
+	/**
+	 * Log a debug message.
+	 * 
+	 * @param message the message to log
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage _debug(String message) {
+		return log(LogLevel.DEBUG, cfg.defaultLog(), message, null);
+	}
+
+	/**
+	 * Log a debug message.
+	 * 
+	 * @param format the log message format
+	 * @param args   the log message arguments
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage _debugF(String format, Object... args) {
+		return logF(LogLevel.DEBUG, cfg.defaultLog(), format, args);
+	}
+
+	/**
+	 * Log a debug message.
+	 * 
+	 * @param facility the log message facility
+	 * @param message  the message to log
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage debug(String facility, String message) {
+		return log(LogLevel.DEBUG, facility, message, null);
+	}
+
+	/**
+	 * Log a debug message.
+	 * 
+	 * @param facility the log message facility
+	 * @param format   the log message format
+	 * @param args     the log message arguments
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage debugF(String facility, String format, Object... args) {
+		return logF(LogLevel.DEBUG, facility, format, args);
+	}
+
+	/**
+	 * Log a warning message.
+	 * 
+	 * @param message the message to log
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage _warn(String message) {
+		return log(LogLevel.WARN, cfg.defaultLog(), message, null);
+	}
+
+	/**
+	 * Log a warning message.
+	 * 
+	 * @param format the log message format
+	 * @param args   the log message arguments
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage _warnF(String format, Object... args) {
+		return logF(LogLevel.WARN, cfg.defaultLog(), format, args);
+	}
+
+	/**
+	 * Log a warning message.
+	 * 
+	 * @param facility the log message facility
+	 * @param message  the message to log
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage warn(String facility, String message) {
+		return log(LogLevel.WARN, facility, message, null);
+	}
+
+	/**
+	 * Log a warning message.
+	 * 
+	 * @param facility the log message facility
+	 * @param message  the message to log
+	 * @param e        the exception to log
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage warn(String facility, String message, Throwable e) {
+		return log(LogLevel.WARN, facility, message, e);
+	}
+
+	/**
+	 * Log a warning message.
+	 * 
+	 * @param facility the log message facility
+	 * @param format   the log message format
+	 * @param args     the log message arguments
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage warnF(String facility, String format, Object... args) {
+		return logF(LogLevel.WARN, facility, format, args);
+	}
+
+	/**
+	 * Log an error message.
+	 * 
+	 * @param message the message to log
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage _error(String message) {
+		return log(LogLevel.ERROR, cfg.defaultLog(), message, null);
+	}
+
+	/**
+	 * Log an error message.
+	 * 
+	 * @param format the log message format
+	 * @param args   the log message arguments
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage _errorF(String format, Object... args) {
+		return logF(LogLevel.ERROR, cfg.defaultLog(), format, args);
+	}
+
+	/**
+	 * Log an error message.
+	 * 
+	 * @param facility the log message facility
+	 * @param message  the message to log
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage error(String facility, String message) {
+		return log(LogLevel.ERROR, facility, message, null);
+	}
+
+	/**
+	 * Log an error message.
+	 * 
+	 * @param facility the log message facility
+	 * @param message  the message to log
+	 * @param e        the exception to log
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage error(String facility, String message, Throwable e) {
+		return log(LogLevel.ERROR, facility, message, e);
+	}
+
+	/**
+	 * Log an error message.
+	 * 
+	 * @param facility the log message facility
+	 * @param format   the log message format
+	 * @param args     the log message arguments
+	 * @return the log message, not logged if disabled or limited
+	 */
+	public static LibLogMessage errorF(String facility, String format, Object... args) {
+		return logF(LogLevel.ERROR, facility, format, args);
 	}
 
 	/**
 	 * Log a localized message.
 	 * 
 	 * @param code the localized message code
-	 * @return the log message
+	 * @return the log message, not logged if disabled or limited
 	 */
 	public static LibLogMessage _clog(String code) {
-		return log(new LibLogMessage(LogLevel.INFO, cfg.defaultLog(), c(code), null));
+		return clog(cfg.defaultLog(), code, null);
 	}
 
 	/**
@@ -114,10 +321,10 @@ public class LibLog {
 	 * 
 	 * @param code the localized message code
 	 * @param e    the exception to log
-	 * @return the log message
+	 * @return the log message, not logged if disabled or limited
 	 */
 	public static LibLogMessage _clog(String code, Throwable e) {
-		return log(new LibLogMessage(LogLevel.INFO, cfg.defaultLog(), c(code), e));
+		return clog(cfg.defaultLog(), code, e);
 	}
 
 	/**
@@ -125,10 +332,10 @@ public class LibLog {
 	 * 
 	 * @param facility the log message facility
 	 * @param code     the localized message code
-	 * @return the log message
+	 * @return the log message, not logged if disabled or limited
 	 */
 	public static LibLogMessage clog(String facility, String code) {
-		return log(new LibLogMessage(LogLevel.INFO, facility, c(code), null));
+		return clog(facility, code, null);
 	}
 
 	/**
@@ -137,10 +344,13 @@ public class LibLog {
 	 * @param facility the log message facility
 	 * @param code     the localized message code
 	 * @param e        the exception to log
-	 * @return the log message
+	 * @return the log message, not logged if disabled or limited
 	 */
 	public static LibLogMessage clog(String facility, String code, Throwable e) {
-		return log(new LibLogMessage(LogLevel.INFO, facility, c(code), e));
+		if (!cfg.isEnabled(LogLevel.INFO, facility)) {
+			return skippedCode(LogLevel.INFO, facility, code, null, e);
+		}
+		return submit(LogLevel.INFO, facility, c(code), null, e);
 	}
 
 	/**
@@ -148,10 +358,10 @@ public class LibLog {
 	 * 
 	 * @param code the localized message code
 	 * @param args the log message arguments
-	 * @return the log message
+	 * @return the log message, not logged if disabled or limited
 	 */
 	public static LibLogMessage _clogF(String code, Object... args) {
-		return log(new LibLogMessage(LogLevel.INFO, cfg.defaultLog(), f(c(code), args), null));
+		return clogF(cfg.defaultLog(), code, args);
 	}
 
 	/**
@@ -160,10 +370,51 @@ public class LibLog {
 	 * @param facility the log message facility
 	 * @param code     the localized message code
 	 * @param args     the log message arguments
-	 * @return the log message
+	 * @return the log message, not logged if disabled or limited
 	 */
 	public static LibLogMessage clogF(String facility, String code, Object... args) {
-		return log(new LibLogMessage(LogLevel.INFO, facility, f(c(code), args), null));
+		if (!cfg.isEnabled(LogLevel.INFO, facility)) {
+			return skippedCode(LogLevel.INFO, facility, code, args, null);
+		}
+
+		// Templates without arguments are not formatted
+		LibLogCatalog catalog = cfg.getCatalog();
+		LibLogCatalog.Template template = catalog.lookup(code);
+		Object[] params = (template.isFormat()) ? args : null;
+
+		// Rendered with the compiled template, limited by its text
+		String text = (params != null && cfg.rendersRepeats()) ? template.format(params) : null;
+		if (!cfg.admit(LogLevel.INFO, facility, template.getText(), text, null)) {
+			return (text != null) ? skipped(LogLevel.INFO, facility, text, null, null) //
+					: skippedCode(LogLevel.INFO, facility, code, params, null);
+		}
+
+		return log((text != null) ? new LibLogMessage(LogLevel.INFO, facility, text, null, null) //
+				: new LibLogMessage(LogLevel.INFO, facility, catalog, code, params, null, cfg.captureLocation()));
+	}
+
+	/**
+	 * Returns true if a message of the given level and facility would be logged.
+	 * 
+	 * Use to guard expensive message arguments.
+	 * 
+	 * @param level    the log message level
+	 * @param facility the log message facility
+	 * @return message would be logged
+	 */
+	public static boolean isEnabled(LogLevel level, String facility) {
+		return cfg.isEnabled(level, facility);
+	}
+
+	/**
+	 * Returns true if a message of the given level would be logged to the default
+	 * facility.
+	 * 
+	 * @param level the log message level
+	 * @return message would be logged
+	 */
+	public static boolean _isEnabled(LogLevel level) {
+		return cfg.isEnabled(level, cfg.defaultLog());
 	}
 
 	/**
@@ -173,18 +424,61 @@ public class LibLog {
 	 * @return the log message
 	 */
 	public static LibLogMessage log(LibLogMessage message) {
-		for (LibLogWriter logger : cfg.loggers()) {
-			try {
-				logger.write(message);
-			} catch (Error | Exception ex) {
-				System.err.printf("Failed writing log.\n ( %s )\n", message);
-				ex.printStackTrace(System.err);
-			}
+		LibLogAsyncDispatcher async = cfg.dispatcher();
+		if (async != null) {
+			async.publish(message);
+		} else {
+			cfg.write(message);
 		}
 
 		return message;
 	}
 
+	/**
+	 * Log an enabled message, if it passes the rate limits.
+	 * 
+	 * Messages compared for repeats are rendered first, once for the limiter and
+	 * the writers.
+	 */
+	private static LibLogMessage submit(LogLevel level, String facility, //
+			String format, Object[] args, Throwable e) {
+
+		String text = (args != null && cfg.rendersRepeats()) ? f(format, args) : null;
+		boolean admitted = cfg.admit(level, facility, format, text, e);
+
+		// Call sites are limited by format, the message is written as rendered
+		if (text != null) {
+			format = text;
+			args = null;
+		}
+
+		if (!admitted) {
+			return skipped(level, facility, format, args, e);
+		}
+		return log(new LibLogMessage(level, facility, format, args, e));
+	}
+
+	/**
+	 * Build a message which is returned to the caller, but not logged.
+	 * 
+	 * The message is only formatted if used, and the calling location is never
+	 * captured.
+	 */
+	private static LibLogMessage skipped(LogLevel level, String facility, //
+			String format, Object[] args, Throwable e) {
+		return new LibLogMessage(level, facility, format, args, e, false);
+	}
+
+	/**
+	 * Build a localized message which is returned to the caller, but not logged.
+	 * 
+	 * The code is only looked up if the message is used.
+	 */
+	private static LibLogMessage skippedCode(LogLevel level, String facility, //
+			String code, Object[] args, Throwable e) {
+		return new LibLogMessage(level, facility, cfg.getCatalog(), code, args, e, false);
+	}
+
 	/**
 	 * Format a message.
 	 * 
@@ -193,12 +487,23 @@ public class LibLog {
 	 * @return the formatted log string
 	 */
 	public static String f(String format, Object... args) {
+		return f(LibLogFormat.compile(format), args);
+	}
+
+	/**
+	 * Format a message with a compiled format.
+	 * 
+	 * @param format the compiled log message format
+	 * @param args   the log message arguments
+	 * @return the formatted log string
+	 */
+	public static String f(LibLogFormat format, Object... args) {
 		try {
-			return String.format(format, args);
+			return format.apply(args);
 		} catch (IllegalFormatException e) {
 			String exc = e.getClass().getName();
 			exc = exc.substring(exc.lastIndexOf('.') + 1);
-			return String.format("%s (%s: %s)", format, exc, e.getMessage());
+			return String.format("%s (%s: %s)", format.getFormat(), exc, e.getMessage());
 		}
 	}
 
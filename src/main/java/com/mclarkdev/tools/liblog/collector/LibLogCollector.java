@@ -0,0 +1,250 @@
+package com.mclarkdev.tools.liblog.collector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.mclarkdev.tools.liblog.LibLog;
+import com.mclarkdev.tools.liblog.lib.LibLogWriter;
+import com.mclarkdev.tools.liblog.writer.LibLogFileWriter;
+
+/**
+ * LibLog // LibLogCollector
+ * 
+ * Receives log lines from the tcp and udp writers of other processes, and
+ * writes them to facility log files.
+ * 
+ * A few selector threads serve all of the listeners and connections. Lines are
+ * split on the received bytes and written without decoding, the facility is
+ * read from the line. Listeners may expect binary frames or a compressed
+ * stream, to match the writers. (?format=binary, ?compress=deflate)
+ * 
+ * UDP listeners ask for a large receive buffer to ride out bursts, limited by
+ * the system maximum. (?rcvbuf=4194304)
+ */
+public class LibLogCollector implements Closeable {
+
+	/**
+	 * Listener settings, attached to its selection key.
+	 */
+	static final class Listener {
+
+		final boolean binary;
+		final boolean inflate;
+
+		Listener(boolean binary, boolean inflate) {
+			this.binary = binary;
+			this.inflate = inflate;
+		}
+	}
+
+	final LibLogFileWriter files;
+
+	private final LibLogCollectorLoop[] loops;
+
+	private final AtomicInteger nextLoop = new AtomicInteger();
+
+	private final List<NetworkChannel> listeners = new CopyOnWriteArrayList<>();
+
+	final LongAdder connected = new LongAdder();
+	final LongAdder open = new LongAdder();
+	final LongAdder bytes = new LongAdder();
+	final LongAdder lines = new LongAdder();
+	final LongAdder errors = new LongAdder();
+
+	/**
+	 * Create a new collector.
+	 * 
+	 * @param files   the writer for received lines, already setup
+	 * @param threads number of selector threads
+	 * @throws IOException failed opening a selector
+	 */
+	public LibLogCollector(LibLogFileWriter files, int threads) throws IOException {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Invalid collector threads: " + threads);
+		}
+
+		this.files = files;
+		this.loops = new LibLogCollectorLoop[threads];
+		for (int x = 0; x < threads; x++) {
+			loops[x] = new LibLogCollectorLoop(this, x);
+			loops[x].start();
+		}
+	}
+
+	/**
+	 * Listen for a writer scheme. (tcp://0.0.0.0:1234, udp://0.0.0.0:1234)
+	 * 
+	 * @param uri the address to listen on, with the format of the writers
+	 * @return the bound address, with the port chosen if 0
+	 * @throws IOException failed binding the address
+	 */
+	public InetSocketAddress listen(URI uri) throws IOException {
+
+		Map<String, String> params = LibLogWriter.parseQuery(uri.getQuery());
+		String format = params.getOrDefault("format", "text");
+		if (!format.equals("text") && !format.equals("binary")) {
+			throw new IllegalArgumentException("Unknown wire format: " + format);
+		}
+		String compress = params.getOrDefault("compress", "none");
+		if (!compress.equals("none") && !compress.equals("deflate")) {
+			throw new IllegalArgumentException("Unknown compression: " + compress);
+		}
+
+		Listener listener = new Listener(format.equals("binary"), compress.equals("deflate"));
+		InetSocketAddress address = new InetSocketAddress(uri.getHost(), Math.max(0, uri.getPort()));
+		NetworkChannel bound;
+
+		switch (String.valueOf(uri.getScheme())) {
+		case "tcp":
+			ServerSocketChannel server = ServerSocketChannel.open();
+			server.bind(address, 1024);
+			server.configureBlocking(false);
+			listeners.add(server);
+			next().register(server, SelectionKey.OP_ACCEPT, listener);
+			bound = server;
+			break;
+
+		case "udp":
+			if (listener.inflate) {
+				throw new IllegalArgumentException("Compression is not supported for udp.");
+			}
+
+			DatagramChannel channel = DatagramChannel.open();
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, //
+					Integer.parseInt(params.getOrDefault("rcvbuf", "4194304")));
+			channel.bind(address);
+			channel.configureBlocking(false);
+			listeners.add(channel);
+			next().register(channel, SelectionKey.OP_READ, listener);
+			bound = channel;
+			break;
+
+		default:
+			throw new IllegalArgumentException("Unknown collector scheme: " + uri);
+		}
+
+		LibLog.logF("collector", "Listening on %s", uri);
+		return (InetSocketAddress) bound.getLocalAddress();
+	}
+
+	LibLogCollectorLoop next() {
+		return loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+	}
+
+	/**
+	 * Returns the number of connections accepted.
+	 * 
+	 * @return connections accepted
+	 */
+	public long getConnections() {
+		return connected.sum();
+	}
+
+	/**
+	 * Returns the number of connections open.
+	 * 
+	 * @return connections open
+	 */
+	public long getOpenConnections() {
+		return open.sum();
+	}
+
+	/**
+	 * Returns the number of bytes received.
+	 * 
+	 * @return bytes received
+	 */
+	public long getBytesReceived() {
+		return bytes.sum();
+	}
+
+	/**
+	 * Returns the number of lines written.
+	 * 
+	 * @return lines written
+	 */
+	public long getLinesWritten() {
+		return lines.sum();
+	}
+
+	/**
+	 * Returns the number of connections dropped on an error, and datagrams which
+	 * could not be decoded.
+	 * 
+	 * @return receive errors
+	 */
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	/**
+	 * Stop listening and close all connections.
+	 * 
+	 * The file writer is not shutdown.
+	 */
+	@Override
+	public void close() {
+		for (NetworkChannel listener : listeners) {
+			try {
+				listener.close();
+			} catch (IOException e) {
+			}
+		}
+
+		for (LibLogCollectorLoop loop : loops) {
+			loop.shutdown();
+		}
+		files.flushLogs();
+	}
+
+	/**
+	 * Run a collector.
+	 * 
+	 * LibLogCollector file:/var/log/remote tcp://0.0.0.0:5140 udp://0.0.0.0:5140
+	 * 
+	 * The number of selector threads is set with LOG_COLLECTOR_THREADS. (2)
+	 * 
+	 * @param args the file writer URI, then the addresses to listen on
+	 * @throws IOException          failed starting the collector
+	 * @throws InterruptedException interrupted while running
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.err.println("Usage: LibLogCollector <file:/dir> <tcp|udp://host:port>...");
+			System.exit(1);
+		}
+
+		String threads = System.getenv("LOG_COLLECTOR_THREADS");
+
+		LibLogFileWriter files = new LibLogFileWriter(URI.create(args[0]));
+		files.setup();
+
+		LibLogCollector collector = new LibLogCollector(files, //
+				(threads != null) ? Integer.parseInt(threads) : 2);
+		for (int x = 1; x < args.length; x++) {
+			collector.listen(URI.create(args[x]));
+		}
+
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				collector.close();
+				files.shutdown();
+			}
+		});
+
+		// Run until the process is stopped
+		Thread.currentThread().join();
+	}
+}
@@ -0,0 +1,171 @@
+package com.mclarkdev.tools.liblog.collector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.mclarkdev.tools.liblog.lib.LibLogBinaryReader;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage;
+
+/**
+ * LibLog // LibLogCollectorConnection
+ * 
+ * The receive state of a single TCP connection to the collector.
+ * 
+ * Bytes are read into a reusable buffer, inflated first if the connection is
+ * compressed, and complete lines or frames are handed to the loop. The partial
+ * line or frame left over is moved to the front of the buffer.
+ */
+final class LibLogCollectorConnection {
+
+	private static final int BUFFER_SIZE = (64 * 1024);
+
+	// Largest binary frame accepted
+	private static final int MAX_BUFFER = (4 * 1024 * 1024);
+
+	final SocketChannel channel;
+
+	private final LibLogCollectorLoop loop;
+
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	// Compressed connections
+	private final Inflater inflater;
+	private final ByteBuffer compressed;
+
+	// Binary connections
+	private final LibLogBinaryReader reader;
+	private final List<LibLogMessage> messages;
+
+	LibLogCollectorConnection(LibLogCollectorLoop loop, SocketChannel channel, //
+			boolean binary, boolean inflate) {
+		this.loop = loop;
+		this.channel = channel;
+
+		this.inflater = (inflate) ? new Inflater() : null;
+		this.compressed = (inflate) ? ByteBuffer.allocate(BUFFER_SIZE) : null;
+
+		this.reader = (binary) ? new LibLogBinaryReader() : null;
+		this.messages = (binary) ? new ArrayList<>() : null;
+	}
+
+	/**
+	 * Read what is available from the connection.
+	 * 
+	 * @return false when the connection has closed
+	 * @throws IOException failed reading, or malformed data
+	 */
+	boolean read() throws IOException {
+		if (inflater == null) {
+			room();
+			int read = channel.read(buffer);
+			if (read < 0) {
+				return false;
+			}
+
+			loop.received(read);
+			consume();
+			return true;
+		}
+
+		int read = channel.read(compressed);
+		if (read < 0) {
+			return false;
+		}
+		loop.received(read);
+
+		// Inflate all of what was read
+		compressed.flip();
+		inflater.setInput(compressed.array(), 0, compressed.limit());
+		try {
+			while (true) {
+				room();
+				int inflated = inflater.inflate(buffer.array(), buffer.position(), buffer.remaining());
+				buffer.position(buffer.position() + inflated);
+				consume();
+
+				if (inflated == 0 && (inflater.needsInput() || inflater.finished())) {
+					break;
+				} else if (inflater.needsDictionary()) {
+					throw new IOException("Unexpected compression dictionary.");
+				}
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Malformed compressed stream.", e);
+		} finally {
+			compressed.clear();
+		}
+		return true;
+	}
+
+	private void room() throws IOException {
+		if (buffer.hasRemaining()) {
+			return;
+		}
+
+		if (reader == null) {
+
+			// A line longer than the buffer is split
+			loop.line(buffer.array(), 0, buffer.position());
+			buffer.clear();
+			return;
+		}
+
+		// Grow to hold a large frame
+		if (buffer.capacity() >= MAX_BUFFER) {
+			throw new IOException("Frame too large.");
+		}
+		ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+		buffer.flip();
+		grown.put(buffer);
+		buffer = grown;
+	}
+
+	private void consume() throws IOException {
+		byte[] data = buffer.array();
+		int end = buffer.position();
+		int used;
+
+		if (reader != null) {
+
+			// Decode the complete frames
+			used = reader.decode(data, 0, end, messages);
+			for (LibLogMessage message : messages) {
+				loop.message(message);
+			}
+			messages.clear();
+		} else {
+
+			// Find the complete lines
+			used = 0;
+			for (int x = 0; x < end; x++) {
+				if (data[x] == '\n') {
+					loop.line(data, used, x);
+					used = x + 1;
+				}
+			}
+		}
+
+		// Keep the partial line or frame
+		System.arraycopy(data, used, data, 0, end - used);
+		buffer.position(end - used);
+	}
+
+	/**
+	 * Release the connection.
+	 */
+	void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+		}
+
+		if (inflater != null) {
+			inflater.end();
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package com.mclarkdev.tools.liblog.collector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.mclarkdev.tools.liblog.LibLog;
+import com.mclarkdev.tools.liblog.lib.LibLogBinaryReader;
+import com.mclarkdev.tools.liblog.lib.LibLogEncoder;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage;
+
+/**
+ * LibLog // LibLogCollectorLoop
+ * 
+ * A selector thread of the collector, serving any number of connections.
+ * 
+ * Channels are handed to the loop from other threads through a queue, and
+ * registered by the loop itself.
+ */
+final class LibLogCollectorLoop implements Runnable {
+
+	private static final int DATAGRAM_SIZE = (64 * 1024);
+
+	private final LibLogCollector collector;
+
+	private final Selector selector;
+
+	private final Thread thread;
+
+	private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+	private final LibLogFacilityTable facilities = new LibLogFacilityTable();
+
+	// Encodes binary messages as lines
+	private final LibLogEncoder encoder = new LibLogEncoder(1024);
+
+	private final ByteBuffer datagram = ByteBuffer.allocate(DATAGRAM_SIZE);
+
+	private volatile boolean running = true;
+
+	LibLogCollectorLoop(LibLogCollector collector, int id) throws IOException {
+		this.collector = collector;
+		this.selector = Selector.open();
+
+		this.thread = new Thread(this, "LibLogCollector:" + id);
+		this.thread.setDaemon(true);
+	}
+
+	void start() {
+		thread.start();
+	}
+
+	/**
+	 * Register a channel with the loop.
+	 * 
+	 * @param channel    the channel, non-blocking
+	 * @param ops        interest set
+	 * @param attachment listener or connection state
+	 */
+	void register(SelectableChannel channel, int ops, Object attachment) {
+		pending.add(() -> {
+			try {
+				channel.register(selector, ops, attachment);
+			} catch (IOException e) {
+				LibLog.log("collector", "Failed to register channel.", e);
+			}
+		});
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				selector.select();
+
+				Runnable task;
+				while ((task = pending.poll()) != null) {
+					task.run();
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					if (key.isValid()) {
+						ready(key);
+					}
+				}
+			}
+		} catch (IOException | ClosedSelectorException e) {
+			if (running) {
+				LibLog.log("collector", "Collector loop failed.", e);
+			}
+		}
+	}
+
+	private void ready(SelectionKey key) {
+		Object attachment = key.attachment();
+
+		if (attachment instanceof LibLogCollectorConnection) {
+
+			// Read from a connection
+			LibLogCollectorConnection connection = (LibLogCollectorConnection) attachment;
+			try {
+				if (!connection.read()) {
+					closed(key, connection);
+				}
+			} catch (IOException e) {
+				collector.errors.increment();
+				closed(key, connection);
+			}
+			return;
+		}
+
+		LibLogCollector.Listener listener = (LibLogCollector.Listener) attachment;
+		if (key.channel() instanceof ServerSocketChannel) {
+			accept((ServerSocketChannel) key.channel(), listener);
+		} else {
+			receive((DatagramChannel) key.channel(), listener);
+		}
+	}
+
+	private void accept(ServerSocketChannel server, LibLogCollector.Listener listener) {
+		try {
+			SocketChannel channel;
+			while ((channel = server.accept()) != null) {
+				channel.configureBlocking(false);
+
+				collector.connected.increment();
+				collector.open.increment();
+
+				// Spread the connections over the loops
+				LibLogCollectorLoop loop = collector.next();
+				loop.register(channel, SelectionKey.OP_READ, //
+						new LibLogCollectorConnection(loop, channel, listener.binary, listener.inflate));
+			}
+		} catch (IOException e) {
+			LibLog.log("collector", "Failed to accept connection.", e);
+		}
+	}
+
+	private void receive(DatagramChannel channel, LibLogCollector.Listener listener) {
+		try {
+			while (true) {
+				datagram.clear();
+				if (channel.receive(datagram) == null) {
+					return;
+				}
+				received(datagram.position());
+
+				byte[] data = datagram.array();
+				int end = datagram.position();
+				if (listener.binary) {
+					try {
+						for (LibLogMessage message : LibLogBinaryReader.decode(data, 0, end)) {
+							message(message);
+						}
+					} catch (IOException e) {
+						collector.errors.increment();
+					}
+					continue;
+				}
+
+				// Each line in the datagram, the last may be unterminated
+				int start = 0;
+				for (int x = 0; x < end; x++) {
+					if (data[x] == '\n') {
+						line(data, start, x);
+						start = x + 1;
+					}
+				}
+				if (start < end) {
+					line(data, start, end);
+				}
+			}
+		} catch (IOException e) {
+			LibLog.log("collector", "Failed to receive datagram.", e);
+		}
+	}
+
+	private void closed(SelectionKey key, LibLogCollectorConnection connection) {
+		key.cancel();
+		connection.close();
+		collector.open.decrement();
+	}
+
+	void received(int bytes) {
+		collector.bytes.add(bytes);
+	}
+
+	/**
+	 * Route a received text line to its facility log.
+	 * 
+	 * @param data  the received bytes
+	 * @param start offset of the line
+	 * @param end   end of the line, excluding the terminator
+	 */
+	void line(byte[] data, int start, int end) {
+		if (end > start && data[end - 1] == '\r') {
+			end--;
+		}
+		if (end == start) {
+			return;
+		}
+
+		String facility = facilities.lookup(data, start, end);
+		collector.files.writeLine(facility, data, start, end - start);
+		collector.lines.increment();
+	}
+
+	/**
+	 * Route a decoded message to its facility log.
+	 * 
+	 * @param message the decoded message
+	 */
+	void message(LibLogMessage message) {
+		boolean debug = (message.getLoggedClassName() != null);
+		encoder.clear().appendLine(message, debug);
+
+		String facility = LibLogFacilityTable.check(message.getLoggedFacility());
+		collector.files.writeLine(facility, encoder.array(), 0, encoder.size());
+		collector.lines.increment();
+	}
+
+	/**
+	 * Stop the loop, closing its channels.
+	 */
+	void shutdown() {
+		running = false;
+		selector.wakeup();
+
+		try {
+			thread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		List<Object> attachments = new ArrayList<>();
+		try {
+			for (SelectionKey key : selector.keys()) {
+				attachments.add(key.attachment());
+				key.channel().close();
+			}
+			selector.close();
+		} catch (IOException | ClosedSelectorException e) {
+		}
+
+		for (Object attachment : attachments) {
+			if (attachment instanceof LibLogCollectorConnection) {
+				((LibLogCollectorConnection) attachment).close();
+			}
+		}
+	}
+}
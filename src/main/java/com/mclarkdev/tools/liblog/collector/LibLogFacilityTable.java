@@ -0,0 +1,124 @@
+package com.mclarkdev.tools.liblog.collector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * LibLog // LibLogFacilityTable
+ * 
+ * Finds the facility of a received log line, without creating a String for
+ * every line.
+ * 
+ * Names are held in a small direct mapped table keyed by their bytes, so the
+ * steady state allocates nothing. Names which could not be used as a file name
+ * are replaced with the default facility. Owned by a single thread.
+ */
+final class LibLogFacilityTable {
+
+	/**
+	 * Facility for lines which do not name a usable one.
+	 */
+	static final String DEFAULT = "remote";
+
+	private static final int SIZE = 1024;
+
+	private static final int MAX_NAME = 64;
+
+	// How far into a line the facility is looked for
+	private static final int MAX_SCAN = 128;
+
+	private final byte[][] keys = new byte[SIZE][];
+	private final String[] names = new String[SIZE];
+
+	/**
+	 * Returns the facility of a line. ( +stamp - LEVEL [ facility ...)
+	 * 
+	 * @param line  the received bytes
+	 * @param start offset of the line
+	 * @param end   end of the line
+	 * @return the facility, or the default
+	 */
+	String lookup(byte[] line, int start, int end) {
+
+		// Find the opening bracket
+		int limit = Math.min(end, start + MAX_SCAN);
+		int open = start;
+		while (open < limit && line[open] != '[') {
+			open++;
+		}
+
+		int from = open + 2;
+		if (from >= limit || line[open + 1] != ' ') {
+			return DEFAULT;
+		}
+
+		// The name ends at the next space
+		int to = from;
+		while (to < end && line[to] != ' ') {
+			if (!valid(line[to]) || (to - from) >= MAX_NAME) {
+				return DEFAULT;
+			}
+			to++;
+		}
+
+		if (to == from || line[from] == '.') {
+			return DEFAULT;
+		}
+
+		// Hash the name bytes
+		int hash = 1;
+		for (int x = from; x < to; x++) {
+			hash = (31 * hash) + line[x];
+		}
+		int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+
+		byte[] key = keys[slot];
+		if (key != null && equals(key, line, from, to)) {
+			return names[slot];
+		}
+
+		// Replace whatever held the slot
+		keys[slot] = Arrays.copyOfRange(line, from, to);
+		names[slot] = new String(keys[slot], StandardCharsets.US_ASCII);
+		return names[slot];
+	}
+
+	/**
+	 * Returns a facility name if it is usable as a file name.
+	 * 
+	 * @param name the facility name
+	 * @return the name, or the default
+	 */
+	static String check(String name) {
+		if (name == null || name.isEmpty() //
+				|| name.length() > MAX_NAME || name.charAt(0) == '.') {
+			return DEFAULT;
+		}
+
+		for (int x = 0; x < name.length(); x++) {
+			char c = name.charAt(x);
+			if (c >= 0x80 || !valid((byte) c)) {
+				return DEFAULT;
+			}
+		}
+		return name;
+	}
+
+	private static boolean valid(byte b) {
+		return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') //
+				|| (b >= '0' && b <= '9') || b == '-' || b == '_' || b == '.';
+	}
+
+	private static boolean equals(byte[] key, byte[] line, int from, int to) {
+		if (key.length != (to - from)) {
+			return false;
+		}
+
+		for (int x = 0; x < key.length; x++) {
+			if (key[x] != line[from + x]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,187 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LibLog // LibLogAsyncDispatcher
+ * 
+ * Hands messages from application threads to a dedicated thread which writes
+ * them to the log writers.
+ */
+public class LibLogAsyncDispatcher {
+
+	private final LibLogConfig cfg;
+
+	private final LibLogRingBuffer<LibLogMessage> ring;
+
+	private final LibLogWaitStrategy wait;
+
+	private final LibLogOverflowPolicy overflow;
+
+	private final LongAdder messagesDropped = new LongAdder();
+
+	private final AtomicInteger publishing = new AtomicInteger();
+
+	private volatile boolean running = true;
+
+	private final Thread consumer = new Thread() {
+		public void run() {
+			drain();
+		}
+	};
+
+	private final Thread shutdownHook = new Thread() {
+		public void run() {
+			shutdown();
+		}
+	};
+
+	/**
+	 * Create a new dispatcher.
+	 * 
+	 * @param cfg      the logger configuration
+	 * @param size     the ring buffer size
+	 * @param wait     how the consumer waits for messages
+	 * @param overflow what to do when the ring buffer is full
+	 */
+	public LibLogAsyncDispatcher(LibLogConfig cfg, int size, //
+			LibLogWaitStrategy wait, LibLogOverflowPolicy overflow) {
+
+		this.cfg = cfg;
+		this.ring = new LibLogRingBuffer<>(size);
+		this.wait = wait;
+		this.overflow = overflow;
+
+		consumer.setName(String.format(//
+				"LibLogAsync:Dispatch (%s, %s)", wait, overflow));
+		consumer.setDaemon(true);
+	}
+
+	/**
+	 * Start the consumer thread.
+	 */
+	public void start() {
+		consumer.start();
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	/**
+	 * Stop the consumer thread once all queued messages are written.
+	 */
+	public void shutdown() {
+		running = false;
+
+		try {
+			if (Thread.currentThread() != consumer) {
+				consumer.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// Wait out producers which saw the dispatcher running
+		while (publishing.get() != 0) {
+			Thread.yield();
+		}
+
+		// Write anything queued during shutdown
+		LibLogMessage message;
+		while ((message = ring.poll()) != null) {
+			cfg.write(message);
+		}
+
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// Already shutting down
+		}
+	}
+
+	/**
+	 * Queue a message to be written.
+	 * 
+	 * @param message the message to write
+	 */
+	public void publish(LibLogMessage message) {
+
+		// Messages raised while writing are written directly
+		if (Thread.currentThread() == consumer) {
+			cfg.write(message);
+			return;
+		}
+
+		// Format on the calling thread, arguments may change once queued
+		message.getLoggedMessage();
+
+		// Counted so shutdown() can not miss a message queued late
+		boolean queued;
+		publishing.incrementAndGet();
+		try {
+			queued = queue(message);
+		} finally {
+			publishing.decrementAndGet();
+		}
+
+		// Messages published after shutdown are written directly
+		if (!queued) {
+			cfg.write(message);
+		}
+	}
+
+	private boolean queue(LibLogMessage message) {
+
+		int attempt = 0;
+		while (running) {
+			if (ring.offer(message)) {
+				return true;
+			}
+
+			// Apply the overflow policy
+			if (overflow.dropsOldest()) {
+				if (ring.poll() != null) {
+					messagesDropped.increment();
+				}
+				continue;
+			} else if (!overflow.blocks(message.getLoggedLevel())) {
+				messagesDropped.increment();
+				return true;
+			}
+
+			wait.idle(++attempt);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the current number of queued messages.
+	 * 
+	 * @return number of queued messages
+	 */
+	public int getMessagesQueued() {
+		return ring.size();
+	}
+
+	/**
+	 * Returns the number of messages dropped because the queue was full.
+	 * 
+	 * @return number of messages dropped
+	 */
+	public long getMessagesDropped() {
+		return messagesDropped.sum();
+	}
+
+	private void drain() {
+		int idle = 0;
+		while (running || !ring.isEmpty()) {
+			LibLogMessage message = ring.poll();
+			if (message == null) {
+				wait.idle(++idle);
+				continue;
+			}
+
+			idle = 0;
+			cfg.write(message);
+		}
+	}
+}
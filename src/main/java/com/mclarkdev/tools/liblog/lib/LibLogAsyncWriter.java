@@ -0,0 +1,301 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.mclarkdev.tools.liblog.LibLog;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
+
+/**
+ * LibLog // LibLogAsyncWriter
+ * 
+ * Runs a log writer behind its own bounded queue and thread, so a slow writer
+ * cannot hold up the callers or the other writers. (?async=true)
+ * 
+ * A write slower than the limit, or failing, degrades the writer to only
+ * queue messages at or above a level. A write stuck past the isolation limit
+ * while the queue is full isolates the writer, dropping all messages until the
+ * write returns. The writer recovers once it catches up, or once no write has
+ * been slow or failed for the recovery time. The first error of each episode
+ * is reported. (?asyncSize=8192, ?asyncOverflow=drop, ?asyncSlow=ms,
+ * ?asyncIsolate=ms, ?asyncDegraded=LEVEL, ?asyncRecover=ms)
+ */
+public class LibLogAsyncWriter extends LibLogWriter {
+
+	/**
+	 * The health of a writer.
+	 */
+	public enum Health {
+
+		/**
+		 * Writing normally.
+		 */
+		HEALTHY,
+
+		/**
+		 * Slow or failing, lower levels are dropped.
+		 */
+		DEGRADED,
+
+		/**
+		 * Stuck, all messages are dropped.
+		 */
+		ISOLATED;
+	}
+
+	// The wrapped writer
+	private final LibLogWriter writer;
+
+	// Messages queued for the writer
+	private final LibLogRingBuffer<LibLogMessage> queue;
+
+	// What to do when the queue is full
+	private final LibLogOverflowPolicy overflow;
+
+	// Write time which degrades the writer
+	private final long slow;
+
+	// Write time which isolates the writer
+	private final long isolate;
+
+	// Lowest level queued while degraded
+	private final LogLevel degraded;
+
+	// Time without trouble which recovers the writer
+	private final long recover;
+
+	private volatile Health health = Health.HEALTHY;
+
+	// Start of the write in progress, or 0
+	private volatile long writing = 0;
+
+	// Last slow or failed write
+	private volatile long troubled = System.nanoTime();
+
+	private volatile boolean running = true;
+
+	// Drain thread is waiting for messages
+	private volatile boolean sleeping = false;
+
+	// Errors since the writer was last healthy
+	private long errors = 0;
+
+	private final Thread drainThread = LibLogScheduler.newThread(//
+			String.format("LibLogAsyncWriter:Drain (%s)", uri.toString()), this::drain);
+
+	// Writes the queue when the JVM exits, the drain thread is a daemon
+	private final Thread shutdownHook = new Thread() {
+		public void run() {
+			shutdown();
+		}
+	};
+
+	/**
+	 * Returns true if a writer URI asks to be written asynchronously.
+	 * 
+	 * @param uri the writer URI
+	 * @return write asynchronously
+	 */
+	public static boolean requested(URI uri) {
+		String value = parseQuery(uri.getQuery()).get("async");
+		return (value != null) && (value.isEmpty() || Boolean.parseBoolean(value));
+	}
+
+	/**
+	 * Wrap a log writer.
+	 * 
+	 * @param uri    the writer URI
+	 * @param writer the writer to wrap
+	 */
+	public LibLogAsyncWriter(URI uri, LibLogWriter writer) {
+		super(uri);
+
+		this.writer = writer;
+		this.writer.getMetrics().queue(this::getQueueDepth);
+
+		this.queue = new LibLogRingBuffer<>((int) param("asyncSize", 8192));
+		this.overflow = LibLogOverflowPolicy.parse(param("asyncOverflow", "drop"));
+		this.slow = TimeUnit.MILLISECONDS.toNanos(param("asyncSlow", 1000));
+		this.isolate = TimeUnit.MILLISECONDS.toNanos(param("asyncIsolate", 10000));
+		this.degraded = LogLevel.parse(param("asyncDegraded", "WARN"));
+		this.recover = TimeUnit.MILLISECONDS.toNanos(param("asyncRecover", 5000));
+	}
+
+	/**
+	 * Returns the wrapped writer.
+	 * 
+	 * @return the writer
+	 */
+	public LibLogWriter getWriter() {
+		return writer;
+	}
+
+	/**
+	 * Returns the health of the writer.
+	 * 
+	 * @return the writer health
+	 */
+	public Health getHealth() {
+		return health;
+	}
+
+	/**
+	 * Returns the metrics of the wrapped writer, latencies are the time to queue.
+	 */
+	@Override
+	public LibLogWriterMetrics getMetrics() {
+		return writer.getMetrics();
+	}
+
+	@Override
+	public long getQueueDepth() {
+		return queue.size() + writer.getQueueDepth();
+	}
+
+	@Override
+	public void setup() {
+		writer.setup();
+		drainThread.start();
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	@Override
+	public void write(LibLogMessage message) {
+		LibLogWriterMetrics metrics = writer.getMetrics();
+
+		// Drop what the writer cannot take, until the stuck write returns
+		Health state = health;
+		if (state == Health.ISOLATED && writing != 0) {
+			metrics.dropped();
+			return;
+		}
+
+		// Lower levels are tried again once the writer has been quiet
+		if (state == Health.DEGRADED && !message.getLoggedLevel().atLeast(degraded)) {
+			if ((System.nanoTime() - troubled) < recover) {
+				metrics.dropped();
+				return;
+			}
+			health(Health.HEALTHY, "quiet", null);
+		}
+
+		// Format on the calling thread, arguments may change once queued
+		message.getLoggedMessage();
+
+		int attempt = 0;
+		while (!queue.offer(message)) {
+
+			// A write stuck past the limit isolates the writer
+			long started = writing;
+			if (started != 0 && (System.nanoTime() - started) > isolate) {
+				health(Health.ISOLATED, "write blocked", null);
+				metrics.dropped();
+				return;
+			}
+
+			// Apply the overflow policy
+			if (overflow.dropsOldest()) {
+				if (queue.poll() != null) {
+					metrics.dropped();
+				}
+				continue;
+			} else if (!running || !overflow.blocks(message.getLoggedLevel()) //
+					|| Thread.currentThread() == drainThread) {
+				metrics.dropped();
+				return;
+			}
+
+			LibLogWaitStrategy.PARK.idle(++attempt);
+		}
+
+		// Wake the drain thread
+		if (sleeping) {
+			LockSupport.unpark(drainThread);
+		}
+	}
+
+	private void drain() {
+		while (running || !queue.isEmpty()) {
+
+			// Sleep until signalled
+			LibLogMessage message = queue.poll();
+			if (message == null) {
+				sleeping = true;
+				if (queue.isEmpty() && running) {
+					LockSupport.park(this);
+				}
+				sleeping = false;
+				continue;
+			}
+
+			long started = System.nanoTime();
+			writing = started;
+			try {
+				writer.write(message);
+			} catch (Error | Exception e) {
+				writer.getMetrics().error();
+				health(Health.DEGRADED, "write failed", e);
+				continue;
+			} finally {
+				writing = 0;
+			}
+
+			// Degrade while slow, recover once caught up
+			if ((System.nanoTime() - started) > slow) {
+				health(Health.DEGRADED, "write slow", null);
+			} else if (health != Health.HEALTHY && queue.isEmpty()) {
+				health(Health.HEALTHY, "caught up", null);
+			}
+		}
+	}
+
+	private synchronized void health(Health next, String reason, Throwable e) {
+		if (next != Health.HEALTHY) {
+			troubled = System.nanoTime();
+		}
+
+		if (e != null && errors++ == 0) {
+
+			// Report the first error of each episode
+			System.err.printf("Failed writing log.\n ( %s )\n", uri);
+			e.printStackTrace(System.err);
+		}
+
+		Health previous = health;
+		if (previous == next) {
+			return;
+		}
+		health = next;
+
+		long failed = errors;
+		if (next == Health.HEALTHY) {
+			errors = 0;
+		}
+
+		LibLog.logF((next == Health.HEALTHY) ? LogLevel.INFO : LogLevel.WARN, "logger", //
+				"LogWriter %s, %s: %s (%d errors)", next, reason, uri, failed);
+	}
+
+	@Override
+	public void shutdown() {
+		try {
+			running = false;
+			LockSupport.unpark(drainThread);
+			drainThread.join(TimeUnit.NANOSECONDS.toMillis(isolate));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (drainThread.isAlive()) {
+			System.err.printf("LogWriter stalled, %d messages not written.\n ( %s )\n", queue.size(), uri);
+		}
+		writer.shutdown();
+
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// Already shutting down
+		}
+	}
+}
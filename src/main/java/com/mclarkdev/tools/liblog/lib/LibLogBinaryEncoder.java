@@ -0,0 +1,111 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LibLog // LibLogBinaryEncoder
+ * 
+ * Encodes log messages in the compact binary wire format.
+ * 
+ * Each frame is a varint length followed by a record. A record starts with its
+ * type: MESSAGE, DEFINE, or RESET.
+ * 
+ * <pre>
+ * MESSAGE  level:byte  time:zigzag-varint delta from the previous message
+ *          facility:varint name  class:varint name  line:varint (line + 1)
+ *          message:varint length, UTF-8
+ * DEFINE   id:varint  name:varint length, UTF-8
+ * RESET    clears the names and the previous time
+ * </pre>
+ * 
+ * Facility and class names are sent once per context as a DEFINE and referred
+ * to by id afterwards, id 0 is no name. The context is kept per connection,
+ * and started fresh for each datagram. Not thread-safe.
+ */
+public final class LibLogBinaryEncoder {
+
+	public static final byte MESSAGE = 1;
+	public static final byte DEFINE = 2;
+	public static final byte RESET = 3;
+
+	/**
+	 * Names held before the context is reset.
+	 */
+	public static final int MAX_NAMES = 4096;
+
+	private final Map<String, Integer> names = new HashMap<>();
+
+	private final LibLogEncoder record = new LibLogEncoder(256);
+
+	private long lastTime = 0;
+
+	/**
+	 * Start a new context, as a new connection or datagram.
+	 */
+	public void reset() {
+		names.clear();
+		lastTime = 0;
+	}
+
+	/**
+	 * Append a message, and any names it defines, as frames.
+	 * 
+	 * @param out     the encoder to append to
+	 * @param message the message to encode
+	 * @param debug   include the calling class and line
+	 * @return this encoder
+	 */
+	public LibLogBinaryEncoder append(LibLogEncoder out, LibLogMessage message, boolean debug) {
+
+		// Start over rather than grow without bound, never between two names
+		if (names.size() + 2 > MAX_NAMES) {
+			reset();
+			record.clear().append(RESET);
+			frame(out);
+		}
+
+		// Names are defined before the message refers to them
+		int facility = name(out, message.getLoggedFacility());
+		int className = (debug) ? name(out, message.getLoggedClassName()) : 0;
+		long line = (debug) ? (message.getLoggedLineNumber() + 1) : 0;
+
+		long time = message.getTime();
+		long delta = time - lastTime;
+		lastTime = time;
+
+		record.clear().append(MESSAGE)//
+				.append((byte) message.getLoggedLevel().ordinal())//
+				.appendVarint((delta << 1) ^ (delta >> 63))//
+				.appendVarint(facility)//
+				.appendVarint(className)//
+				.appendVarint(Math.max(0, line))//
+				.appendPrefixed(message.getLoggedMessage());
+		frame(out);
+		return this;
+	}
+
+	private int name(LibLogEncoder out, String name) {
+		if (name == null) {
+			return 0;
+		}
+
+		Integer id = names.get(name);
+		if (id != null) {
+			return id;
+		}
+
+		id = names.size() + 1;
+		names.put(name, id);
+
+		record.clear().append(DEFINE)//
+				.appendVarint(id)//
+				.appendPrefixed(name);
+		frame(out);
+		return id;
+	}
+
+	private void frame(LibLogEncoder out) {
+		out.appendVarint(record.size()).append(record.array(), 0, record.size());
+	}
+}
@@ -0,0 +1,253 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
+
+/**
+ * LibLog // LibLogBinaryReader
+ * 
+ * Decodes the binary wire format written by {@link LibLogBinaryEncoder}.
+ * 
+ * Read a TCP connection with a reader per connection, or decode each datagram
+ * on its own with {@link #decode(byte[], int, int)}. Non-blocking readers push
+ * bytes as they arrive with {@link #decode(byte[], int, int, List)}.
+ */
+public class LibLogBinaryReader {
+
+	private static final int MAX_FRAME = (64 * 1024 * 1024);
+
+	private static final LogLevel[] LEVELS = LogLevel.values();
+
+	private final InputStream in;
+
+	private final List<String> names = new ArrayList<>();
+
+	private long lastTime = 0;
+
+	private byte[] frame = new byte[256];
+
+	// Position while parsing a frame
+	private int pos;
+
+	/**
+	 * Read frames from a stream.
+	 * 
+	 * @param in the stream to read
+	 */
+	public LibLogBinaryReader(InputStream in) {
+		this.in = new BufferedInputStream(in, 64 * 1024);
+	}
+
+	/**
+	 * Decode frames pushed to the reader.
+	 */
+	public LibLogBinaryReader() {
+		this.in = null;
+	}
+
+	/**
+	 * Read the next message from the stream.
+	 * 
+	 * @return the message, or null at the end of the stream
+	 * @throws IOException failed reading, or a malformed frame
+	 */
+	public LibLogMessage read() throws IOException {
+		while (true) {
+
+			// Read the frame length
+			long length = readVarint(in);
+			if (length < 0) {
+				return null;
+			} else if (length > MAX_FRAME) {
+				throw new IOException("Malformed frame length: " + length);
+			}
+
+			// Read the frame
+			if (frame.length < length) {
+				frame = new byte[(int) length];
+			}
+			int read = 0;
+			while (read < length) {
+				int count = in.read(frame, read, (int) length - read);
+				if (count < 0) {
+					throw new EOFException("Truncated frame.");
+				}
+				read += count;
+			}
+
+			LibLogMessage message = parse(frame, 0, (int) length);
+			if (message != null) {
+				return message;
+			}
+		}
+	}
+
+	/**
+	 * Decode the messages in a datagram.
+	 * 
+	 * @param data   the datagram
+	 * @param offset offset of the datagram
+	 * @param length length of the datagram
+	 * @return the decoded messages
+	 * @throws IOException a malformed frame
+	 */
+	public static List<LibLogMessage> decode(byte[] data, int offset, int length) throws IOException {
+		List<LibLogMessage> messages = new ArrayList<>();
+		if (new LibLogBinaryReader().decode(data, offset, length, messages) != length) {
+			throw new IOException("Truncated frame.");
+		}
+		return messages;
+	}
+
+	/**
+	 * Decode the complete frames in a buffer, keeping the context for the next.
+	 * 
+	 * @param data     the received bytes
+	 * @param offset   offset of the first byte
+	 * @param length   number of bytes
+	 * @param messages list to add the decoded messages to
+	 * @return number of bytes consumed, the rest begin an incomplete frame
+	 * @throws IOException a malformed frame
+	 */
+	public int decode(byte[] data, int offset, int length, List<LibLogMessage> messages) throws IOException {
+		int end = offset + length;
+		int next = offset;
+		while (next < end) {
+
+			// Read the frame length, if it has arrived
+			long size = 0;
+			int start = next;
+			for (int shift = 0;; shift += 7) {
+				if (start >= end) {
+					return next - offset;
+				} else if (shift >= 64) {
+					throw new IOException("Malformed varint.");
+				}
+
+				byte b = data[start++];
+				size |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					break;
+				}
+			}
+
+			if (size > MAX_FRAME) {
+				throw new IOException("Malformed frame length: " + size);
+			} else if (size > end - start) {
+				return next - offset;
+			}
+
+			LibLogMessage message = parse(data, start, (int) size);
+			if (message != null) {
+				messages.add(message);
+			}
+			next = start + (int) size;
+		}
+		return next - offset;
+	}
+
+	private LibLogMessage parse(byte[] data, int offset, int length) throws IOException {
+		int end = offset + length;
+		pos = offset;
+
+		if (length < 1) {
+			throw new IOException("Empty frame.");
+		}
+
+		switch (data[pos++]) {
+		case LibLogBinaryEncoder.MESSAGE:
+			int ordinal = (pos < end) ? data[pos++] : -1;
+			if (ordinal < 0 || ordinal >= LEVELS.length) {
+				throw new IOException("Malformed level: " + ordinal);
+			}
+
+			long zigzag = varint(data, end);
+			lastTime += (zigzag >>> 1) ^ -(zigzag & 1);
+
+			String facility = name(varint(data, end));
+			String className = name(varint(data, end));
+			long line = varint(data, end) - 1;
+			String message = string(data, end);
+
+			return new LibLogMessage(lastTime, LEVELS[ordinal], facility, message, className, line);
+
+		case LibLogBinaryEncoder.DEFINE:
+			long id = varint(data, end);
+			if (id != names.size() + 1) {
+				throw new IOException("Unexpected name id: " + id);
+			}
+			names.add(string(data, end));
+			return null;
+
+		case LibLogBinaryEncoder.RESET:
+			names.clear();
+			lastTime = 0;
+			return null;
+
+		default:
+			throw new IOException("Unknown record type: " + data[offset]);
+		}
+	}
+
+	private String name(long id) throws IOException {
+		if (id == 0) {
+			return null;
+		} else if (id > names.size()) {
+			throw new IOException("Undefined name id: " + id);
+		}
+		return names.get((int) id - 1);
+	}
+
+	private String string(byte[] data, int end) throws IOException {
+		long length = varint(data, end);
+		if (length > end - pos) {
+			throw new IOException("Truncated string.");
+		}
+
+		String value = new String(data, pos, (int) length, StandardCharsets.UTF_8);
+		pos += (int) length;
+		return value;
+	}
+
+	private long varint(byte[] data, int end) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			if (pos >= end) {
+				throw new IOException("Truncated varint.");
+			}
+
+			byte b = data[pos++];
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint.");
+	}
+
+	private static long readVarint(InputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				if (shift == 0) {
+					return -1;
+				}
+				throw new EOFException("Truncated varint.");
+			}
+
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint.");
+	}
+}
@@ -1,11 +1,31 @@
 package com.mclarkdev.tools.liblog.lib;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
 
 /**
  * LibLog // LibLogCachedLogWriter
+ * 
+ * Queues messages in a bounded ring buffer, sent to the stream in batches by a
+ * flush thread.
+ * 
+ * The flush thread sleeps until signalled, then sends once a batch is queued
+ * or the oldest message has waited for the latency target. (?cache=500000,
+ * ?batch=512, ?latency=ms, ?overflow=drop-oldest|drop|block|drop-below:LEVEL)
+ * 
+ * With a spill directory, messages arriving while the cache is past its
+ * high-water mark are appended to an on-disk journal instead. The journal is
+ * replayed in order once the cache has drained, throttled to a message rate so
+ * live messages are not held back. (?spill=dir, ?spillMark=250000,
+ * ?spillSegment=bytes, ?replay=10000)
  */
 public abstract class LibLogCachedLogWriter extends LibLogWriter {
 
@@ -18,65 +38,166 @@ public abstract class LibLogCachedLogWriter extends LibLogWriter {
 	protected final int messageCacheMax;
 
 	// The log message cache
-	protected final Queue<String> messageCache;
+	protected final LibLogRingBuffer<LibLogMessage> messageCache;
+
+	// Messages sent per write
+	protected final int batchSize;
+
+	// Longest a message waits for a batch
+	protected final long latency;
+
+	// What to do when the cache is full
+	protected final LibLogOverflowPolicy overflow;
+
+	// Counter for processed, drops are counted in the metrics
+	private final LongAdder messagesProcessed = new LongAdder();
+
+	// Messages taken from the cache, not yet sent
+	private final List<LibLogMessage> pending;
+
+	// Overflow journal, or null
+	protected final LibLogSpillJournal journal;
+
+	// Cache size at which messages are journaled
+	protected final int spillMark;
+
+	// Journal messages replayed per second
+	protected final long replayRate;
+
+	private long replayedAt = 0;
 
-	// Counters for processed / dropped
-	private long messagesProcessed = 0;
-	private long messagesDropped = 0;
+	private volatile boolean running = true;
+
+	// Flush thread is waiting for messages
+	private volatile boolean sleeping = false;
+
+	// Flush thread is waiting for a full batch
+	private volatile boolean batching = false;
 
 	// Cache flushing thread
-	private final Thread flushThread = new Thread() {
-		long next = 0;
+	private final Thread flushThread = LibLogScheduler.newThread(//
+			String.format("LibLogCachedWriter:LogSend (%s)", uri.toString()), this::send);
 
+	private final Thread shutdownHook = new Thread() {
 		public void run() {
-			setName(String.format(//
-					"LibLogCachedWriter:LogSend (%s)", uri.toString()));
+			shutdown();
+		}
+	};
 
-			while (!isInterrupted()) {
-				try {
+	private void send() {
+		while (running) {
 
-					// Wait for next flush loop
-					while (next > System.currentTimeMillis()) {
-						Thread.sleep(10);
+			// Sleep until signalled
+			if (pending.isEmpty() && messageCache.isEmpty()) {
+				sleeping = true;
+				if (messageCache.isEmpty() && running) {
+					if (journal == null || journal.isEmpty()) {
+						LockSupport.park(this);
+					} else if (!replay()) {
+						parkUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_DELAY), false);
 					}
+				}
+				sleeping = false;
+				continue;
+			}
 
-					// Determine next start time
-					next = System.currentTimeMillis() + FLUSH_DELAY;
+			// Wait for a full batch, or the latency target
+			batching = true;
+			parkUntil(System.nanoTime() + latency, true);
+			batching = false;
 
-					// Do the flush
-					flush();
+			// Back off while the stream is down
+			if (!flush()) {
+				parkUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_DELAY), false);
+			}
+		}
+	}
 
-				} catch (InterruptedException e) {
-					return;
-				}
+	private void parkUntil(long deadline, boolean untilBatch) {
+		while (running && !(untilBatch && (pending.size() + messageCache.size()) >= batchSize)) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return;
 			}
+			LockSupport.parkNanos(flushThread, remaining);
 		}
-	};
+	}
 
 	public LibLogCachedLogWriter(URI uri, LibLogStream stream) {
 		super(uri);
 
 		// The log stream
 		this.stream = stream;
+		this.stream.bind(metrics);
 
 		// Setup log cache
-		this.messageCache = new ConcurrentLinkedQueue<>();
-		this.messageCacheMax = 500000;
+		this.messageCache = new LibLogRingBuffer<>((int) param("cache", 500000));
+		this.messageCacheMax = messageCache.capacity();
+
+		this.batchSize = (int) Math.max(1, param("batch", 512));
+		this.latency = TimeUnit.MILLISECONDS.toNanos(param("latency", 100));
+		this.overflow = LibLogOverflowPolicy.parse(param("overflow", "drop-oldest"));
+
+		this.pending = new ArrayList<>(batchSize);
+
+		this.spillMark = (int) param("spillMark", messageCacheMax / 2);
+		this.replayRate = Math.max(1, param("replay", 10000));
+
+		String spill = param("spill", null);
+		this.journal = (spill != null) ? openJournal(//
+				new File(spill), param("spillSegment", 16 * 1024 * 1024)) : null;
+	}
+
+	private static LibLogSpillJournal openJournal(File dir, long segmentSize) {
+		try {
+			return new LibLogSpillJournal(dir, segmentSize);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Failed to open spill journal.", e);
+		}
 	}
 
 	@Override
 	public void setup() {
 		this.flushThread.start();
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
 	}
 
 	@Override
 	public void shutdown() {
 		try {
-			this.flushThread.interrupt();
-			this.flushThread.join();
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// Already shutting down
+		}
+
+		try {
+			running = false;
+			LockSupport.unpark(flushThread);
+			flushThread.join();
+
+			// Send what we can
+			flush();
 		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		} finally {
-			System.gc();
+
+			// Keep unsent messages for the next run
+			if (journal != null) {
+				synchronized (this) {
+					for (LibLogMessage message : pending) {
+						journal.append(message);
+					}
+					pending.clear();
+
+					LibLogMessage message;
+					while ((message = messageCache.poll()) != null) {
+						journal.append(message);
+					}
+				}
+				journal.close();
+			}
+
+			stream.close();
 		}
 	}
 
@@ -95,7 +216,7 @@ public abstract class LibLogCachedLogWriter extends LibLogWriter {
 	 * @return number of messages processed
 	 */
 	public long getMessagesProcessed() {
-		return messagesProcessed;
+		return messagesProcessed.sum();
 	}
 
 	/**
@@ -104,51 +225,136 @@ public abstract class LibLogCachedLogWriter extends LibLogWriter {
 	 * @return number of messages dropped
 	 */
 	public long getMessagesDropped() {
-		return messagesDropped;
+		return metrics.getDrops();
+	}
+
+	@Override
+	public long getQueueDepth() {
+		return messageCache.size() + pending.size();
 	}
 
 	/**
-	 * Add a message to the cache.
+	 * Add a rendered line to the cache, sent as an INFO message without a
+	 * facility.
 	 * 
-	 * @param logLine the message to cache
+	 * @param logLine the line to cache
 	 */
 	public void cache(String logLine) {
+		cache(new LibLogMessage(LibLogTimestamp.now(), LogLevel.INFO, null, logLine, null, -1));
+	}
+
+	/**
+	 * Add a message to the cache.
+	 * 
+	 * Messages are held until sent, cache a {@link LibLogMessage#detach()}ed copy.
+	 * 
+	 * @param message the message to cache
+	 */
+	public void cache(LibLogMessage message) {
+
+		// Journal messages past the high-water mark
+		if (journal != null && messageCache.size() >= spillMark //
+				&& journal.append(message)) {
+			return;
+		}
 
-		synchronized (messageCache) {
-			messageCache.add(logLine);
-			if (messageCache.size() > messageCacheMax) {
-				messageCache.remove();
-				messagesDropped++;
+		int attempt = 0;
+		while (!messageCache.offer(message)) {
+
+			// Apply the overflow policy
+			if (overflow.dropsOldest()) {
+				if (messageCache.poll() != null) {
+					metrics.dropped();
+				}
+				continue;
+			} else if (!running || !overflow.blocks(message.getLoggedLevel()) //
+					|| Thread.currentThread() == flushThread) {
+				metrics.dropped();
+				return;
 			}
+
+			LibLogWaitStrategy.PARK.idle(++attempt);
+		}
+
+		// Wake the flush thread
+		if (sleeping || (batching && messageCache.size() >= batchSize)) {
+			LockSupport.unpark(flushThread);
 		}
 	}
 
 	/**
-	 * Implemented method to flush all messages to their destination.
+	 * Send all cached messages to their destination.
 	 * 
 	 * @return all messages flushed
 	 */
 	public synchronized boolean flush() {
 
-		while (!messageCache.isEmpty()) {
-			if (!stream.write(messageCache.peek())) {
+		while (true) {
+
+			// Fill the batch from the cache
+			LibLogMessage message;
+			while (pending.size() < batchSize && (message = messageCache.poll()) != null) {
+				pending.add(message);
+			}
+
+			if (pending.isEmpty()) {
+				return true;
+			}
+
+			// Send the batch, keeping anything not sent
+			int sent = stream.write(pending, debug);
+			messagesProcessed.add(sent);
+			if (sent == pending.size()) {
+				pending.clear();
+			} else {
+				pending.subList(0, sent).clear();
 				return false;
 			}
-			messageCache.remove();
-			messagesProcessed++;
 		}
+	}
+
+	/**
+	 * Send the next batch of journaled messages, within the replay rate.
+	 * 
+	 * @return all messages sent
+	 */
+	private boolean replay() {
 
-		return true;
+		// Wait until a full batch is within the rate
+		long now = System.nanoTime();
+		long wait = replayedAt + (TimeUnit.SECONDS.toNanos(1) * batchSize / replayRate) - now;
+		if (wait > 0) {
+			LockSupport.parkNanos(flushThread, wait);
+			return true;
+		}
+		replayedAt = now;
+
+		synchronized (this) {
+			journal.poll(pending, batchSize);
+
+			int sent = stream.write(pending, debug);
+			messagesProcessed.add(sent);
+			pending.subList(0, sent).clear();
+			return pending.isEmpty();
+		}
+	}
+
+	/**
+	 * Returns true if messages are waiting in the overflow journal.
+	 * 
+	 * @return messages are journaled
+	 */
+	public boolean isSpilling() {
+		return (journal != null) && !journal.isEmpty();
 	}
 
 	/**
-	 * Basic writer, build and cache the log line.
+	 * Basic writer, render and cache the message.
 	 */
 	@Override
 	public void write(LibLogMessage message) {
-		String logLine = (debug) ? //
-				message.buildDebugLine() : message.buildLogLine();
 
-		cache(logLine);
+		// Format on the calling thread, keeping only the rendered message
+		cache(message.detach());
 	}
 }
@@ -0,0 +1,47 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import com.mclarkdev.tools.liblog.LibLog;
+
+/**
+ * LibLog // LibLogCallerLocator
+ * 
+ * Finds the first stack frame outside of the logger.
+ * 
+ * Java 9+ runtimes load a StackWalker based version of this class.
+ */
+final class LibLogCallerLocator {
+
+	private LibLogCallerLocator() {
+	}
+
+	/**
+	 * Returns the location which invoked the log operation.
+	 * 
+	 * @return the calling stack frame, or null if not found
+	 */
+	static StackTraceElement locate() {
+
+		StackTraceElement[] trace = new Throwable().getStackTrace();
+
+		// first occurrence of not LibLog
+		for (StackTraceElement frame : trace) {
+			if (!internal(frame.getClassName())) {
+				return frame;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns true if the class is part of the logging call path.
+	 * 
+	 * @param className the frame class name
+	 * @return frame is internal to the logger
+	 */
+	static boolean internal(String className) {
+		return className.equals(LibLog.class.getName()) || //
+				className.equals(LibLogMessage.class.getName()) || //
+				className.equals(LibLogCallerLocator.class.getName());
+	}
+}
@@ -0,0 +1,219 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.mclarkdev.tools.liblog.LibLog;
+
+/**
+ * LibLog // LibLogCatalog
+ * 
+ * An immutable catalog of localized message templates, keyed by code.
+ * 
+ * Templates are built and compiled when the catalog is loaded, including the
+ * code prefix when LOG_CODES is set, so lookups take no locks and build
+ * nothing. Templates of unknown codes are built once and kept. Loading
+ * more strings creates a new catalog layered over the old one, which is
+ * swapped in while loggers keep using the old.
+ */
+public final class LibLogCatalog {
+
+	/**
+	 * A localized message, ready to be logged.
+	 */
+	public static final class Template {
+
+		private final String text;
+		private final LibLogFormat format;
+
+		Template(String code, String value, boolean codes) {
+			this.text = (codes) ? (code + " : " + value) : value;
+			this.format = (text.indexOf('%') >= 0) ? LibLogFormat.compile(text) : null;
+		}
+
+		/**
+		 * Returns the message, or its format.
+		 * 
+		 * @return the message text
+		 */
+		public String getText() {
+			return text;
+		}
+
+		/**
+		 * Returns true if the message needs formatting with arguments.
+		 * 
+		 * @return the message is a format
+		 */
+		public boolean isFormat() {
+			return format != null;
+		}
+
+		/**
+		 * Returns the message formatted with arguments.
+		 * 
+		 * @param args the message arguments, or null
+		 * @return the formatted message
+		 */
+		public String format(Object... args) {
+			return (format != null && args != null) ? LibLog.f(format, args) : text;
+		}
+	}
+
+	private static final int MAX_UNKNOWN = 1024;
+
+	private final boolean codes;
+
+	private final Map<String, Template> templates;
+
+	private final Map<String, Template> unknown = new ConcurrentHashMap<>();
+
+	private LibLogCatalog(boolean codes, Map<String, Template> templates) {
+		this.codes = codes;
+		this.templates = templates;
+	}
+
+	/**
+	 * Create an empty catalog.
+	 * 
+	 * @param codes prefix messages with their code
+	 * @return an empty catalog
+	 */
+	public static LibLogCatalog empty(boolean codes) {
+		return new LibLogCatalog(codes, Collections.emptyMap());
+	}
+
+	/**
+	 * Returns the template of a code.
+	 * 
+	 * Unknown codes are logged as the code itself.
+	 * 
+	 * @param code the message code
+	 * @return the message template
+	 */
+	public Template lookup(String code) {
+		Template template = templates.get(code);
+		if (template != null) {
+			return template;
+		}
+
+		template = unknown.get(code);
+		if (template == null) {
+
+			// Codes built at runtime would grow without bound
+			if (unknown.size() >= MAX_UNKNOWN) {
+				unknown.clear();
+			}
+			template = unknown.computeIfAbsent(code, c -> new Template(c, c, codes));
+		}
+		return template;
+	}
+
+	/**
+	 * Returns the localized text of a code.
+	 * 
+	 * Unknown codes are logged as the code itself.
+	 * 
+	 * @param code the message code
+	 * @return the message text
+	 */
+	public String text(String code) {
+		Template template = templates.get(code);
+		if (template != null) {
+			return template.getText();
+		}
+		return (codes) ? lookup(code).getText() : code;
+	}
+
+	/**
+	 * Returns true if the catalog has a template for a code.
+	 * 
+	 * @param code the message code
+	 * @return the code is known
+	 */
+	public boolean contains(String code) {
+		return templates.containsKey(code);
+	}
+
+	/**
+	 * Returns the number of codes in the catalog.
+	 * 
+	 * @return number of codes
+	 */
+	public int size() {
+		return templates.size();
+	}
+
+	/**
+	 * Returns a new catalog with strings layered over this one.
+	 * 
+	 * @param strings the localized strings
+	 * @return the new catalog
+	 */
+	public LibLogCatalog with(Properties strings) {
+		Map<String, Template> layered = new HashMap<>(templates);
+		for (String code : strings.stringPropertyNames()) {
+			layered.put(code, new Template(code, strings.getProperty(code), codes));
+		}
+		return new LibLogCatalog(codes, layered);
+	}
+
+	/**
+	 * Returns a new catalog with strings read from a .properties file layered over
+	 * this one.
+	 * 
+	 * @param in stream to .properties file
+	 * @return the new catalog
+	 * @throws IOException failed to read .properties file
+	 */
+	public LibLogCatalog with(InputStream in) throws IOException {
+		Properties strings = new Properties();
+		strings.load(in);
+		return with(strings);
+	}
+
+	/**
+	 * Returns a new catalog with the strings of a locale layered over this one.
+	 * 
+	 * Resources are layered from the most general to the most specific, missing
+	 * resources are skipped. (/strings/codes.properties,
+	 * /strings/codes.en.properties, /strings/codes.en_US.properties)
+	 * 
+	 * @param owner  class to load the resources from
+	 * @param name   resource name, without the extension
+	 * @param locale the locale
+	 * @return the new catalog
+	 * @throws IOException failed to read a .properties file
+	 */
+	public LibLogCatalog with(Class<?> owner, String name, Locale locale) throws IOException {
+		List<String> candidates = new ArrayList<>();
+		candidates.add(name + ".properties");
+		if (!locale.getLanguage().isEmpty()) {
+			candidates.add(name + "." + locale.getLanguage() + ".properties");
+			if (!locale.getCountry().isEmpty()) {
+				candidates.add(name + "." + locale.getLanguage() + "_" + locale.getCountry() + ".properties");
+				if (!locale.getVariant().isEmpty()) {
+					candidates.add(name + "." + locale + ".properties");
+				}
+			}
+		}
+
+		Properties strings = new Properties();
+		for (String candidate : candidates) {
+			try (InputStream in = owner.getResourceAsStream(candidate)) {
+				if (in != null) {
+					strings.load(in);
+				}
+			}
+		}
+		return with(strings);
+	}
+}
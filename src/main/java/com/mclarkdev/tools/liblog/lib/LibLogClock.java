@@ -0,0 +1,21 @@
+package com.mclarkdev.tools.liblog.lib;
+
+/**
+ * LibLog // LibLogClock
+ * 
+ * The time source used to stamp log messages.
+ */
+public interface LibLogClock {
+
+	/**
+	 * The coarse millisecond wall clock.
+	 */
+	public static final LibLogClock SYSTEM = System::currentTimeMillis;
+
+	/**
+	 * Returns the current time.
+	 * 
+	 * @return milliseconds since the epoch
+	 */
+	public abstract long millis();
+}
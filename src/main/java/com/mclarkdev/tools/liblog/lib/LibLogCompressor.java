@@ -0,0 +1,86 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import com.mclarkdev.tools.liblog.LibLog;
+
+/**
+ * LibLog // LibLogCompressor
+ * 
+ * Compresses rotated log files on a shared, low priority background thread.
+ * 
+ * Each file is written to name.gz.tmp and renamed once complete; the original
+ * is only removed after the compressed copy is in place.
+ */
+public final class LibLogCompressor {
+
+	private static final ExecutorService compressor = new ThreadPoolExecutor(//
+			1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), //
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "LibLogCompressor");
+					thread.setPriority(Thread.MIN_PRIORITY);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private LibLogCompressor() {
+	}
+
+	/**
+	 * Queue a file to be compressed.
+	 * 
+	 * @param file the file to compress
+	 */
+	public static void gzip(final File file) {
+		compressor.execute(new Runnable() {
+			public void run() {
+				compress(file);
+			}
+		});
+	}
+
+	private static void compress(File file) {
+
+		File temp = new File(file.getPath() + ".gz.tmp");
+		File done = new File(file.getPath() + ".gz");
+
+		try {
+
+			// Compress to a temporary file
+			byte[] buffer = new byte[64 * 1024];
+			try (InputStream in = new FileInputStream(file); //
+					OutputStream out = new GZIPOutputStream(new FileOutputStream(temp), buffer.length)) {
+
+				int read;
+				while ((read = in.read(buffer)) > 0) {
+					out.write(buffer, 0, read);
+				}
+			}
+
+			// Replace the original
+			if (!temp.renameTo(done)) {
+				throw new IOException("Failed to rename " + temp);
+			}
+			file.delete();
+
+		} catch (IOException e) {
+
+			// Keep the original
+			temp.delete();
+			LibLog.log("logger", "Failed to compress log file.", e);
+		}
+	}
+}
@@ -2,16 +2,25 @@ package com.mclarkdev.tools.liblog.lib;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Properties;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
+
 /**
  * LibLog // LibLogConfig
  */
@@ -27,7 +36,27 @@ public class LibLogConfig {
 
 	private final Set<LibLogWriter> logWriters;
 
-	private final Properties logStrings = new Properties();
+	private volatile LibLogCatalog catalog;
+
+	private volatile boolean forceLocation = false;
+
+	private volatile boolean captureLocation = false;
+
+	private volatile LogLevel defaultLevel;
+
+	private volatile LogLevel writerLevel = null;
+
+	private final Map<String, LogLevel> facilityLevels = new ConcurrentHashMap<>();
+
+	private volatile LibLogAsyncDispatcher dispatcher = null;
+
+	private volatile LibLogRateLimiter rateLimiter = null;
+
+	private volatile LibLogStackRenderer stackRenderer;
+
+	private final boolean publishMetrics;
+
+	private final Map<LibLogWriter, ObjectName> publishedMetrics = new ConcurrentHashMap<>();
 
 	private LibLogConfig() {
 
@@ -37,6 +66,7 @@ public class LibLogConfig {
 
 		// Debug if environment variable set
 		this.logCodes = (System.getenv("LOG_CODES") != null);
+		this.catalog = LibLogCatalog.empty(logCodes);
 
 		// Parse user requested log streams
 		String logStreams = System.getenv("LOG_STREAMS");
@@ -45,11 +75,52 @@ public class LibLogConfig {
 			userLogs.add(URI.create(logStream));
 		}
 
+		// Determine minimum log level
+		String logLevel = System.getenv("LOG_LEVEL");
+		this.defaultLevel = (logLevel != null) ? LogLevel.parse(logLevel) : LogLevel.DEBUG;
+
+		// Parse per facility log levels
+		String logLevels = System.getenv("LOG_LEVELS");
+		if (logLevels != null) {
+			for (String facilityLevel : logLevels.split(";")) {
+				String[] parts = facilityLevel.split("=", 2);
+				if (parts.length != 2) {
+					throw new IllegalArgumentException("Invalid facility level: " + facilityLevel);
+				}
+				facilityLevels.put(parts[0].trim(), LogLevel.parse(parts[1]));
+			}
+		}
+
+		// Publish writer metrics over JMX
+		this.publishMetrics = !"false".equals(System.getenv("LOG_JMX"));
+
+		// Rate limits and repeat suppression
+		this.rateLimiter = LibLogRateLimiter.fromEnv();
+
+		// Stack trace limits and caching
+		this.stackRenderer = LibLogStackRenderer.fromEnv();
+
 		// Map for log handlers
 		logHandlers = new HashMap<>();
 
 		// Setup logger cache
 		logWriters = ConcurrentHashMap.newKeySet();
+
+		// Setup asynchronous dispatch
+		String async = System.getenv("LOG_ASYNC");
+		if (async != null && async.equals("ringbuffer")) {
+
+			String size = System.getenv("LOG_ASYNC_SIZE");
+			String wait = System.getenv("LOG_ASYNC_WAIT");
+			String overflow = System.getenv("LOG_ASYNC_OVERFLOW");
+
+			enableAsync(//
+					(size != null) ? Integer.parseInt(size) : 65536, //
+					(wait != null) ? LibLogWaitStrategy.parse(wait) : LibLogWaitStrategy.PARK, //
+					(overflow != null) ? LibLogOverflowPolicy.parse(overflow) : LibLogOverflowPolicy.BLOCK);
+		} else if (async != null && !async.equals("off")) {
+			throw new IllegalArgumentException("Unknown async mode: " + async);
+		}
 	}
 
 	/**
@@ -70,6 +141,242 @@ public class LibLogConfig {
 		return logWriters;
 	}
 
+	/**
+	 * Returns the current metrics of all log writers.
+	 * 
+	 * @return a snapshot per writer
+	 */
+	public List<LibLogWriterSnapshot> metrics() {
+		List<LibLogWriterSnapshot> snapshots = new ArrayList<>();
+		for (LibLogWriter writer : logWriters) {
+			snapshots.add(writer.getMetrics().snapshot());
+		}
+		return snapshots;
+	}
+
+	/**
+	 * Returns the asynchronous dispatcher.
+	 * 
+	 * @return the dispatcher, or null if writing synchronously
+	 */
+	public LibLogAsyncDispatcher dispatcher() {
+		return dispatcher;
+	}
+
+	/**
+	 * Write messages to the log writers from a dedicated thread.
+	 * 
+	 * @param size     the ring buffer size
+	 * @param wait     how the dispatch thread waits for messages
+	 * @param overflow what to do when the ring buffer is full
+	 */
+	public synchronized void enableAsync(int size, //
+			LibLogWaitStrategy wait, LibLogOverflowPolicy overflow) {
+
+		LibLogAsyncDispatcher async = new LibLogAsyncDispatcher(this, size, wait, overflow);
+		async.start();
+
+		disableAsync();
+		this.dispatcher = async;
+	}
+
+	/**
+	 * Write messages to the log writers from the calling thread.
+	 * 
+	 * Any queued messages are written before returning.
+	 */
+	public synchronized void disableAsync() {
+		LibLogAsyncDispatcher async = this.dispatcher;
+		this.dispatcher = null;
+
+		if (async != null) {
+			async.shutdown();
+		}
+	}
+
+	/**
+	 * Write a message to all accepting log writers.
+	 * 
+	 * @param message the message to write
+	 */
+	public void write(LibLogMessage message) {
+		for (LibLogWriter logger : logWriters) {
+			if (!logger.accepts(message.getLoggedLevel())) {
+				continue;
+			}
+
+			LibLogWriterMetrics metrics = logger.getMetrics();
+			try {
+				if (metrics.sample()) {
+					long started = System.nanoTime();
+					logger.write(message);
+					metrics.written(System.nanoTime() - started);
+				} else {
+					logger.write(message);
+					metrics.written();
+				}
+			} catch (Error | Exception ex) {
+				metrics.error();
+				System.err.printf("Failed writing log.\n ( %s )\n", message);
+				ex.printStackTrace(System.err);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if messages should capture their calling location.
+	 * 
+	 * @return capture the calling location
+	 */
+	public boolean captureLocation() {
+		return captureLocation;
+	}
+
+	/**
+	 * Always capture the calling location, even without a debug writer.
+	 * 
+	 * @param force always capture the calling location
+	 */
+	public void setCaptureLocation(boolean force) {
+		this.forceLocation = force;
+		updateWriters();
+	}
+
+	/**
+	 * Returns true if a message would be written by any log writer.
+	 * 
+	 * Checked before any formatting or message creation.
+	 * 
+	 * @param level    the message level
+	 * @param facility the message facility
+	 * @return message is enabled
+	 */
+	public boolean isEnabled(LogLevel level, String facility) {
+
+		// Lowest level accepted by any writer
+		LogLevel writers = writerLevel;
+		if (writers == null || !level.atLeast(writers)) {
+			return false;
+		}
+
+		// Facility specific threshold
+		LogLevel threshold = (facilityLevels.isEmpty() || facility == null) ? //
+				defaultLevel : facilityLevels.getOrDefault(facility, defaultLevel);
+		return level.atLeast(threshold);
+	}
+
+	/**
+	 * Returns true if a message passes the rate limits.
+	 * 
+	 * Checked after the level, before message creation.
+	 * 
+	 * @param level    the message level
+	 * @param facility the message facility
+	 * @param format   the message, or its format
+	 * @param text     the rendered message, or null if not a format
+	 * @param tossed   the exception, or null
+	 * @return message may be logged
+	 */
+	public boolean admit(LogLevel level, String facility, String format, String text, Throwable tossed) {
+		LibLogRateLimiter limiter = rateLimiter;
+		return (limiter == null) || limiter.admit(level, facility, format, text, tossed);
+	}
+
+	/**
+	 * Returns true if messages must be rendered before they are admitted.
+	 * 
+	 * @return messages are compared as rendered
+	 */
+	public boolean rendersRepeats() {
+		LibLogRateLimiter limiter = rateLimiter;
+		return (limiter != null) && limiter.comparesRepeats();
+	}
+
+	/**
+	 * Returns the rate limiter.
+	 * 
+	 * @return the rate limiter, or null if not limiting
+	 */
+	public LibLogRateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+
+	/**
+	 * Set the rate limiter.
+	 * 
+	 * @param limiter the rate limiter, or null to stop limiting
+	 */
+	public void setRateLimiter(LibLogRateLimiter limiter) {
+		this.rateLimiter = limiter;
+	}
+
+	/**
+	 * Returns the stack trace renderer.
+	 * 
+	 * @return the stack renderer
+	 */
+	public LibLogStackRenderer getStackRenderer() {
+		return stackRenderer;
+	}
+
+	/**
+	 * Set the stack trace renderer.
+	 * 
+	 * @param renderer the stack renderer
+	 */
+	public void setStackRenderer(LibLogStackRenderer renderer) {
+		if (renderer == null) {
+			throw new IllegalArgumentException("Stack renderer cannot be null");
+		}
+		this.stackRenderer = renderer;
+	}
+
+	/**
+	 * Returns the minimum level of a facility.
+	 * 
+	 * @param facility the log facility
+	 * @return the minimum log level
+	 */
+	public LogLevel getLevel(String facility) {
+		return facilityLevels.getOrDefault(facility, defaultLevel);
+	}
+
+	/**
+	 * Set the minimum level for all facilities without their own level.
+	 * 
+	 * @param level the minimum log level
+	 */
+	public void setLevel(LogLevel level) {
+		this.defaultLevel = level;
+	}
+
+	/**
+	 * Set the minimum level of a facility.
+	 * 
+	 * @param facility the log facility
+	 * @param level    the minimum log level, or null to use the default
+	 */
+	public void setLevel(String facility, LogLevel level) {
+		if (level == null) {
+			facilityLevels.remove(facility);
+		} else {
+			facilityLevels.put(facility, level);
+		}
+	}
+
+	private synchronized void updateWriters() {
+		boolean capture = forceLocation;
+		LogLevel lowest = null;
+		for (LibLogWriter writer : logWriters) {
+			capture |= writer.isDebug();
+			if (lowest == null || !writer.getLevel().atLeast(lowest)) {
+				lowest = writer.getLevel();
+			}
+		}
+		this.captureLocation = capture;
+		this.writerLevel = lowest;
+	}
+
 	/**
 	 * Lookup a localized string by code.
 	 * 
@@ -77,8 +384,41 @@ public class LibLogConfig {
 	 * @return the localized string
 	 */
 	public String l10n(String lookup) {
-		String value = (logStrings.containsKey(lookup)) ? logStrings.getProperty(lookup) : lookup;
-		return (logCodes) ? String.format("%s : %s", lookup, value) : value;
+		return catalog.text(lookup);
+	}
+
+	/**
+	 * Returns the catalog of localized strings.
+	 * 
+	 * @return the current catalog
+	 */
+	public LibLogCatalog getCatalog() {
+		return catalog;
+	}
+
+	/**
+	 * Replace the catalog of localized strings.
+	 * 
+	 * @param catalog the new catalog
+	 */
+	public synchronized void setCatalog(LibLogCatalog catalog) {
+		if (catalog == null) {
+			throw new IllegalArgumentException("Catalog cannot be null");
+		}
+		this.catalog = catalog;
+	}
+
+	/**
+	 * Replace the localized strings, keeping loggers on the old strings until
+	 * the new are loaded.
+	 * 
+	 * @param owner  class to load the resources from
+	 * @param name   resource name, without the extension
+	 * @param locale the locale
+	 * @throws IOException failed to read a .properties file
+	 */
+	public synchronized void reloadStrings(Class<?> owner, String name, Locale locale) throws IOException {
+		this.catalog = LibLogCatalog.empty(logCodes).with(owner, name, locale);
 	}
 
 	/**
@@ -86,6 +426,9 @@ public class LibLogConfig {
 	 */
 	public void shutdown() {
 
+		// Write any queued messages
+		disableAsync();
+
 		// Loop and shutdown the writers
 		for (LibLogWriter writer : logWriters) {
 			writer.shutdown();
@@ -98,8 +441,21 @@ public class LibLogConfig {
 	 * @param in stream to .properties file
 	 * @throws IOException failed to read .properties file
 	 */
-	public void loadStrings(InputStream in) throws IOException {
-		logStrings.load(in);
+	public synchronized void loadStrings(InputStream in) throws IOException {
+		this.catalog = catalog.with(in);
+	}
+
+	/**
+	 * Load localized strings for a locale, with fallback to its language and the
+	 * default strings.
+	 * 
+	 * @param owner  class to load the resources from
+	 * @param name   resource name, without the extension
+	 * @param locale the locale
+	 * @throws IOException failed to read a .properties file
+	 */
+	public synchronized void loadStrings(Class<?> owner, String name, Locale locale) throws IOException {
+		this.catalog = catalog.with(owner, name, locale);
 	}
 
 	/**
@@ -154,6 +510,11 @@ public class LibLogConfig {
 			Constructor<? extends LibLogWriter> ctor = //
 					clazz.getConstructor(URI.class);
 			logWriter = ctor.newInstance(logURI);
+
+			// Write from its own thread if requested
+			if (LibLogAsyncWriter.requested(logURI)) {
+				logWriter = new LibLogAsyncWriter(logURI, logWriter);
+			}
 		} catch (Error | Exception e) {
 
 			// Throw logger creation failure
@@ -183,7 +544,10 @@ public class LibLogConfig {
 	 */
 	public void addLogger(LibLogWriter writer) {
 
-		logWriters.add(writer);
+		if (logWriters.add(writer) && publishMetrics) {
+			publish(writer);
+		}
+		updateWriters();
 	}
 
 	/**
@@ -192,10 +556,46 @@ public class LibLogConfig {
 	 * @param logger remove a custom LogWriter
 	 */
 	public void removeLogger(LibLogWriter logger) {
-		if (logger == null) {
-			logWriters.clear();
-		} else {
-			logWriters.remove(logger);
+		for (LibLogWriter writer : logWriters) {
+			if ((logger == null || logger == writer) && logWriters.remove(writer)) {
+				unpublish(writer);
+			}
+		}
+		updateWriters();
+	}
+
+	private void publish(LibLogWriter writer) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			String name = writer.getMetrics().getName();
+
+			// Writers with the same URI are numbered
+			for (int x = 1;; x++) {
+				ObjectName objectName = new ObjectName(//
+						"com.mclarkdev.tools.liblog:type=LibLogWriter,name=" //
+								+ ObjectName.quote((x == 1) ? name : (name + " #" + x)));
+				try {
+					server.registerMBean(writer.getMetrics(), objectName);
+					publishedMetrics.put(writer, objectName);
+					return;
+				} catch (InstanceAlreadyExistsException e) {
+					continue;
+				}
+			}
+		} catch (JMException | RuntimeException | Error e) {
+			System.err.printf("Failed publishing writer metrics.\n ( %s )\n", e);
+		}
+	}
+
+	private void unpublish(LibLogWriter writer) {
+		ObjectName objectName = publishedMetrics.remove(writer);
+		if (objectName == null) {
+			return;
+		}
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
 		}
 	}
 
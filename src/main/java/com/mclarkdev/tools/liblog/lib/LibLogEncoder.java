@@ -0,0 +1,330 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * LibLog // LibLogEncoder
+ * 
+ * Encodes log lines as UTF-8 directly into a reusable byte buffer.
+ * 
+ * The buffer only grows, so a writer which keeps its encoder reaches a steady
+ * state where encoding a line allocates nothing. Encoders are not thread-safe;
+ * each is owned by a writer (under its lock) or by a thread.
+ */
+public final class LibLogEncoder {
+
+	/**
+	 * The platform line separator.
+	 */
+	public static final byte[] LINE_SEPARATOR = //
+			System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+	private static final ThreadLocal<LibLogEncoder> local = new ThreadLocal<LibLogEncoder>() {
+		protected LibLogEncoder initialValue() {
+			return new LibLogEncoder(1024);
+		}
+	};
+
+	private static final int MAX_RETAINED = 1024 * 1024;
+
+	private ByteBuffer buffer;
+
+	// Thread encoder is in use
+	private boolean held = false;
+
+	/**
+	 * Create a new encoder.
+	 * 
+	 * @param capacity initial buffer capacity
+	 */
+	public LibLogEncoder(int capacity) {
+		this.buffer = ByteBuffer.allocate(capacity);
+	}
+
+	/**
+	 * Returns the encoder owned by the calling thread, cleared.
+	 * 
+	 * Call {@link #release()} once done. If the thread encoder is already in use,
+	 * by a line which logged while being written, a new encoder is returned.
+	 * 
+	 * @return the thread local encoder
+	 */
+	public static LibLogEncoder local() {
+		LibLogEncoder encoder = local.get();
+		if (encoder.held) {
+			return new LibLogEncoder(1024);
+		}
+
+		encoder.held = true;
+		return encoder.clear();
+	}
+
+	/**
+	 * Return a thread encoder for reuse.
+	 */
+	public void release() {
+		held = false;
+	}
+
+	/**
+	 * Discard the encoded bytes.
+	 * 
+	 * @return this encoder
+	 */
+	public LibLogEncoder clear() {
+		if (buffer.capacity() > MAX_RETAINED) {
+			buffer = ByteBuffer.allocate(1024);
+		}
+		buffer.clear();
+		return this;
+	}
+
+	/**
+	 * Returns the number of encoded bytes.
+	 * 
+	 * @return encoded length
+	 */
+	public int size() {
+		return buffer.position();
+	}
+
+	/**
+	 * Returns the backing array of the encoded bytes, starting at offset 0.
+	 * 
+	 * @return the backing array
+	 */
+	public byte[] array() {
+		return buffer.array();
+	}
+
+	/**
+	 * Prepare the encoded bytes to be read.
+	 * 
+	 * The encoder must be cleared before appending again.
+	 * 
+	 * @return the encoded bytes, ready to be read
+	 */
+	public ByteBuffer flip() {
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Encode a log line, without a line terminator.
+	 * 
+	 * @param message the message to encode
+	 * @param debug   include debugging information
+	 * @return this encoder
+	 */
+	public LibLogEncoder appendLine(LibLogMessage message, boolean debug) {
+
+		// Render first, formatting may log
+		String text = message.getLoggedMessage();
+
+		append(" +").append(message.getTimeStamp());
+		append(" - ").append(message.getLoggedLevel().name());
+		append(" [ ").append(String.valueOf(message.getLoggedFacility()));
+
+		if (debug) {
+			append(" @ ").append(String.valueOf(message.getLoggedClassName()));
+			append(" : ").appendDecimal(message.getLoggedLineNumber());
+		}
+
+		append(" ] - ").append(text);
+		return this;
+	}
+
+	/**
+	 * Append raw bytes.
+	 * 
+	 * @param bytes the bytes to append
+	 * @return this encoder
+	 */
+	public LibLogEncoder append(byte[] bytes) {
+		ensure(bytes.length);
+		buffer.put(bytes);
+		return this;
+	}
+
+	/**
+	 * Append part of an array of raw bytes.
+	 * 
+	 * @param bytes  the bytes to append
+	 * @param offset offset of the first byte
+	 * @param length number of bytes
+	 * @return this encoder
+	 */
+	public LibLogEncoder append(byte[] bytes, int offset, int length) {
+		ensure(length);
+		buffer.put(bytes, offset, length);
+		return this;
+	}
+
+	/**
+	 * Append an unsigned variable length integer, seven bits per byte.
+	 * 
+	 * @param value the number to append
+	 * @return this encoder
+	 */
+	public LibLogEncoder appendVarint(long value) {
+		ensure(10);
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+		return this;
+	}
+
+	/**
+	 * Append text as UTF-8, prefixed with its length as a varint.
+	 * 
+	 * @param text the text to append
+	 * @return this encoder
+	 */
+	public LibLogEncoder appendPrefixed(String text) {
+		return appendVarint(utf8Length(text)).append(text);
+	}
+
+	/**
+	 * Returns the number of bytes text is encoded to.
+	 * 
+	 * @param text the text to measure
+	 * @return length in bytes
+	 */
+	public static int utf8Length(String text) {
+		int length = text.length();
+		int bytes = length;
+		for (int x = 0; x < length; x++) {
+			char c = text.charAt(x);
+			if (c < 0x80) {
+				continue;
+			} else if (c < 0x800) {
+				bytes += 1;
+			} else if (Character.isHighSurrogate(c) && (x + 1) < length
+					&& Character.isLowSurrogate(text.charAt(x + 1))) {
+				bytes += 2;
+				x++;
+			} else if (!Character.isSurrogate(c)) {
+				bytes += 2;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Append a single byte.
+	 * 
+	 * @param b the byte to append
+	 * @return this encoder
+	 */
+	public LibLogEncoder append(byte b) {
+		ensure(1);
+		buffer.put(b);
+		return this;
+	}
+
+	/**
+	 * Append a number in decimal.
+	 * 
+	 * @param value the number to append
+	 * @return this encoder
+	 */
+	public LibLogEncoder appendDecimal(long value) {
+		ensure(20);
+
+		if (value < 0) {
+			buffer.put((byte) '-');
+		} else {
+			value = -value;
+		}
+
+		// Digits are produced from a negative value to handle Long.MIN_VALUE
+		int start = buffer.position();
+		do {
+			buffer.put((byte) ('0' - (value % 10)));
+			value /= 10;
+		} while (value != 0);
+
+		// Reverse the digits in place
+		byte[] array = buffer.array();
+		for (int lo = start, hi = buffer.position() - 1; lo < hi; lo++, hi--) {
+			byte tmp = array[lo];
+			array[lo] = array[hi];
+			array[hi] = tmp;
+		}
+		return this;
+	}
+
+	/**
+	 * Append text as UTF-8.
+	 * 
+	 * @param text the text to append
+	 * @return this encoder
+	 */
+	public LibLogEncoder append(String text) {
+		int length = text.length();
+		ensure(length);
+
+		// ASCII fast path
+		byte[] array = buffer.array();
+		int pos = buffer.position();
+		int x = 0;
+		for (; x < length; x++) {
+			char c = text.charAt(x);
+			if (c >= 0x80) {
+				break;
+			}
+			array[pos++] = (byte) c;
+		}
+		buffer.position(pos);
+
+		if (x < length) {
+			appendUTF8(text, x);
+		}
+		return this;
+	}
+
+	private void appendUTF8(String text, int from) {
+		int length = text.length();
+		ensure((length - from) * 3);
+
+		for (int x = from; x < length; x++) {
+			char c = text.charAt(x);
+			if (c < 0x80) {
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				buffer.put((byte) (0xC0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && (x + 1) < length
+					&& Character.isLowSurrogate(text.charAt(x + 1))) {
+				int cp = Character.toCodePoint(c, text.charAt(++x));
+				buffer.put((byte) (0xF0 | (cp >> 18)));
+				buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (cp & 0x3F)));
+			} else if (Character.isSurrogate(c)) {
+				buffer.put((byte) '?');
+			} else {
+				buffer.put((byte) (0xE0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+	}
+
+	private void ensure(int bytes) {
+		if (buffer.remaining() >= bytes) {
+			return;
+		}
+
+		int required = buffer.position() + bytes;
+		int capacity = Math.max(required, buffer.capacity() * 2);
+
+		ByteBuffer grown = ByteBuffer.allocate(capacity);
+		buffer.flip();
+		grown.put(buffer);
+		buffer = grown;
+	}
+}
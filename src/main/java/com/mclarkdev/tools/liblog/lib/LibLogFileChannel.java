@@ -0,0 +1,298 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * LibLog // LibLogFileChannel
+ * 
+ * An append-only log file which collects lines in a buffer and writes them to
+ * disk in group commits.
+ * 
+ * The buffer is written when it fills, when {@link #flush()} is called by the
+ * owning writer's timer, or when the fsync policy requires it. Data not yet
+ * written is bounded by the buffer size and flush interval; data not yet
+ * synced is bounded by the fsync policy.
+ * 
+ * Files are named yyyyMMdd-name.log and rotated under the same lock as writes,
+ * so no line is written to a closed file. A rotated file keeps its name unless
+ * the new file would share it, in which case it is renamed to name.log.N.
+ */
+public class LibLogFileChannel implements Closeable {
+
+	private final File dir;
+
+	private final String name;
+
+	private final ByteBuffer buffer;
+
+	private final LibLogFsyncPolicy fsync;
+
+	private final LibLogRotationPolicy rotation;
+
+	private File file;
+
+	private FileChannel channel;
+
+	private long size;
+
+	private long rotateAt;
+
+	private int linesUnsynced = 0;
+
+	private boolean unsynced = false;
+
+	private boolean closed = false;
+
+	/**
+	 * Open a log file for appending.
+	 * 
+	 * @param dir        the log directory
+	 * @param name       the log name
+	 * @param bufferSize bytes collected before writing
+	 * @param fsync      when to sync the file
+	 * @param rotation   when to rotate the file
+	 * @throws IOException failed opening the file
+	 */
+	public LibLogFileChannel(File dir, String name, int bufferSize, //
+			LibLogFsyncPolicy fsync, LibLogRotationPolicy rotation) throws IOException {
+
+		this.dir = dir;
+		this.name = name;
+		this.buffer = ByteBuffer.allocateDirect(bufferSize);
+		this.fsync = fsync;
+		this.rotation = rotation;
+
+		long now = LibLogTimestamp.now();
+		this.file = fileName(now);
+		this.channel = open(file);
+		this.size = channel.size();
+		this.rotateAt = rotation.nextRotation(now);
+	}
+
+	/**
+	 * Returns the log file.
+	 * 
+	 * @return the log file
+	 */
+	public synchronized File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns true if the file has been closed.
+	 * 
+	 * @return file is closed
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Append a line to the file.
+	 * 
+	 * @param line   the encoded line
+	 * @param offset offset of the line in the array
+	 * @param length length of the line
+	 * @return false if the file has been closed
+	 * @throws IOException failed writing the file
+	 */
+	public synchronized boolean write(byte[] line, int offset, int length) throws IOException {
+		if (closed) {
+			return false;
+		}
+
+		// Rotate before the line if due
+		if (rotation.exceeds(size, length) || LibLogTimestamp.now() >= rotateAt) {
+			rotate();
+		}
+
+		// Make room for the line
+		if (length > buffer.remaining()) {
+			drain();
+		}
+
+		if (length > buffer.capacity()) {
+
+			// Lines larger than the buffer are written directly
+			write(ByteBuffer.wrap(line, offset, length));
+		} else {
+
+			buffer.put(line, offset, length);
+		}
+		size += length;
+
+		// Sync after every N lines
+		if (fsync.getMode() == LibLogFsyncPolicy.Mode.EVERY //
+				&& ++linesUnsynced >= fsync.getLines()) {
+			drain();
+			sync();
+		}
+		return true;
+	}
+
+	/**
+	 * Write any buffered lines, syncing if required by the policy.
+	 * 
+	 * @throws IOException failed writing the file
+	 */
+	public synchronized void flush() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		// Rotate idle files on time
+		if (LibLogTimestamp.now() >= rotateAt) {
+			rotate();
+			return;
+		}
+
+		drain();
+
+		if (fsync.getMode() != LibLogFsyncPolicy.Mode.NONE) {
+			sync();
+		}
+	}
+
+	/**
+	 * Write any buffered lines and close the file.
+	 * 
+	 * @throws IOException failed writing the file
+	 */
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		try {
+			flush();
+		} finally {
+			closed = true;
+			channel.close();
+		}
+	}
+
+	/**
+	 * Close the current file and start a new one.
+	 * 
+	 * @throws IOException failed rotating the file
+	 */
+	public synchronized void rotate() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		// Finish the current file
+		drain();
+		if (fsync.getMode() != LibLogFsyncPolicy.Mode.NONE) {
+			sync();
+		}
+
+		boolean interrupted = Thread.interrupted();
+		try {
+			channel.close();
+
+			long now = LibLogTimestamp.now();
+			File next = fileName(now);
+			File rotated = file;
+
+			// Move the file aside if the name is reused
+			if (next.equals(file)) {
+				int sequence = 0;
+				do {
+					rotated = new File(dir, String.format("%s.%d", file.getName(), sequence++));
+				} while (rotated.exists() || new File(rotated.getPath() + ".gz").exists());
+
+				if (!file.renameTo(rotated)) {
+					rotated = null;
+				}
+			}
+
+			// Start the next file
+			file = next;
+			channel = open(file);
+			size = channel.size();
+			rotateAt = rotation.nextRotation(now);
+			linesUnsynced = 0;
+			unsynced = false;
+
+			if (rotated != null && rotation.isCompressed()) {
+				LibLogCompressor.gzip(rotated);
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private File fileName(long now) {
+		return new File(dir, String.format("%s-%s.log", //
+				LibLogTimestamp.format(now).substring(0, 8), name));
+	}
+
+	private void drain() throws IOException {
+		if (buffer.position() == 0) {
+			return;
+		}
+
+		buffer.flip();
+		try {
+			write(buffer);
+		} finally {
+			buffer.compact();
+		}
+	}
+
+	private void write(ByteBuffer bytes) throws IOException {
+
+		// An interrupt would close the channel, hold it until finished
+		boolean interrupted = Thread.interrupted();
+		try {
+			ensureOpen();
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+			unsynced = true;
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void sync() throws IOException {
+		linesUnsynced = 0;
+		if (!unsynced) {
+			return;
+		}
+
+		boolean interrupted = Thread.interrupted();
+		try {
+			ensureOpen();
+			channel.force(false);
+			unsynced = false;
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (!channel.isOpen()) {
+			channel = open(file);
+		}
+	}
+
+	private static FileChannel open(File file) throws IOException {
+		return FileChannel.open(file.toPath(), //
+				StandardOpenOption.CREATE, //
+				StandardOpenOption.WRITE, //
+				StandardOpenOption.APPEND);
+	}
+}
@@ -0,0 +1,249 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.math.BigInteger;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LibLog // LibLogFormat
+ * 
+ * A compiled message format, producing the same result as
+ * {@link String#format(String, Object...)}.
+ * 
+ * Formats using only %s, %d, %x, %% and %n are split once into literals and
+ * arguments, then appended to a reused builder. Any other specifier, argument
+ * type or a missing argument is left to {@link java.util.Formatter}. Compiled
+ * formats are cached by their string.
+ */
+public final class LibLogFormat {
+
+	// Formats cached before starting over
+	private static final int MAX_CACHED = 1024;
+
+	// Largest builder kept for reuse
+	private static final int MAX_BUILDER = 16384;
+
+	private static final Map<String, LibLogFormat> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * A builder owned by a thread, unless an argument formats while in use.
+	 */
+	private static final class Builder {
+
+		private final StringBuilder out = new StringBuilder(256);
+		private boolean busy;
+	}
+
+	private static final ThreadLocal<Builder> builders = ThreadLocal.withInitial(Builder::new);
+
+	/**
+	 * The locale integers were last checked for, and if it uses ASCII digits.
+	 */
+	private static final class Digits {
+
+		private final Locale locale;
+		private final boolean ascii;
+
+		private Digits(Locale locale) {
+			this.locale = locale;
+			this.ascii = DecimalFormatSymbols.getInstance(locale).getZeroDigit() == '0';
+		}
+	}
+
+	private static volatile Digits digits = new Digits(Locale.getDefault(Locale.Category.FORMAT));
+
+	private final String format;
+
+	private final boolean compiled;
+
+	private final boolean integers;
+
+	private final String[] literals;
+
+	private final char[] conversions;
+
+	private final int length;
+
+	private LibLogFormat(String format) {
+		this.format = format;
+
+		StringBuilder literal = new StringBuilder();
+		StringBuilder conversions = new StringBuilder();
+		List<String> literals = new ArrayList<>();
+
+		boolean compiled = true;
+		int x = 0;
+		while (x < format.length()) {
+			char c = format.charAt(x++);
+			if (c != '%') {
+				literal.append(c);
+				continue;
+			}
+
+			// Anything but the simple conversions is left to the formatter
+			char next = (x < format.length()) ? format.charAt(x++) : 0;
+			if (next == '%') {
+				literal.append('%');
+			} else if (next == 'n') {
+				literal.append(System.lineSeparator());
+			} else if (next == 's' || next == 'd' || next == 'x') {
+				literals.add(literal.toString());
+				literal.setLength(0);
+				conversions.append(next);
+			} else {
+				compiled = false;
+				break;
+			}
+		}
+		literals.add(literal.toString());
+
+		int length = 0;
+		for (String part : literals) {
+			length += part.length();
+		}
+
+		this.compiled = compiled;
+		this.literals = literals.toArray(new String[0]);
+		this.conversions = conversions.toString().toCharArray();
+		this.integers = conversions.indexOf("d") >= 0;
+		this.length = length + (16 * this.conversions.length);
+	}
+
+	/**
+	 * Returns the compiled format of a string.
+	 * 
+	 * @param format the format string
+	 * @return the compiled format
+	 */
+	public static LibLogFormat compile(String format) {
+		LibLogFormat compiled = cache.get(format);
+		if (compiled == null) {
+
+			// Formats built at runtime would grow without bound
+			if (cache.size() >= MAX_CACHED) {
+				cache.clear();
+			}
+			compiled = cache.computeIfAbsent(format, LibLogFormat::new);
+		}
+		return compiled;
+	}
+
+	/**
+	 * Format a string, as {@link String#format(String, Object...)}.
+	 * 
+	 * @param format the format string
+	 * @param args   the format arguments
+	 * @return the formatted string
+	 * @throws java.util.IllegalFormatException invalid format or arguments
+	 */
+	public static String format(String format, Object... args) {
+		return compile(format).apply(args);
+	}
+
+	/**
+	 * Returns the format string.
+	 * 
+	 * @return the format string
+	 */
+	public String getFormat() {
+		return format;
+	}
+
+	/**
+	 * Apply the format to arguments.
+	 * 
+	 * @param args the format arguments
+	 * @return the formatted string
+	 * @throws java.util.IllegalFormatException invalid format or arguments
+	 */
+	public String apply(Object... args) {
+		if (!compiled || (args == null && conversions.length > 0) //
+				|| (args != null && args.length < conversions.length) //
+				|| (integers && !asciiDigits())) {
+			return String.format(format, args);
+		}
+
+		Builder builder = builders.get();
+		StringBuilder out = (builder.busy) ? new StringBuilder(length) : builder.out;
+		boolean owner = !builder.busy;
+		builder.busy = true;
+		try {
+			for (int x = 0; x < conversions.length; x++) {
+				out.append(literals[x]);
+				if (!append(out, conversions[x], args[x])) {
+					return String.format(format, args);
+				}
+			}
+			out.append(literals[conversions.length]);
+			return out.toString();
+		} finally {
+			if (owner) {
+				builder.busy = false;
+				out.setLength(0);
+				if (out.capacity() > MAX_BUILDER) {
+					builders.remove();
+				}
+			}
+		}
+	}
+
+	private static boolean append(StringBuilder out, char conversion, Object arg) {
+		if (arg == null) {
+			out.append("null");
+			return true;
+		}
+
+		switch (conversion) {
+		case 's':
+			if (arg instanceof Formattable) {
+				return false;
+			}
+			out.append(arg.toString());
+			return true;
+
+		case 'd':
+			if (arg instanceof Integer || arg instanceof Long //
+					|| arg instanceof Short || arg instanceof Byte) {
+				out.append(((Number) arg).longValue());
+				return true;
+			}
+			if (arg instanceof BigInteger) {
+				out.append(arg.toString());
+				return true;
+			}
+			return false;
+
+		case 'x':
+			if (arg instanceof Integer) {
+				out.append(Integer.toHexString((Integer) arg));
+			} else if (arg instanceof Long) {
+				out.append(Long.toHexString((Long) arg));
+			} else if (arg instanceof Short) {
+				out.append(Integer.toHexString(((Short) arg) & 0xffff));
+			} else if (arg instanceof Byte) {
+				out.append(Integer.toHexString(((Byte) arg) & 0xff));
+			} else {
+				return false;
+			}
+			return true;
+
+		default:
+			return false;
+		}
+	}
+
+	private static boolean asciiDigits() {
+		Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+		Digits checked = digits;
+		if (checked.locale != locale) {
+			checked = new Digits(locale);
+			digits = checked;
+		}
+		return checked.ascii;
+	}
+}
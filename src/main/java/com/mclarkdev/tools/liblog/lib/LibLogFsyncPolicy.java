@@ -0,0 +1,105 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.util.Locale;
+
+/**
+ * LibLog // LibLogFsyncPolicy
+ * 
+ * When buffered log files are forced to the storage device.
+ * 
+ * Parsed from none, interval, or every-N.
+ */
+public final class LibLogFsyncPolicy {
+
+	public enum Mode {
+
+		/**
+		 * Leave syncing to the operating system.
+		 */
+		NONE,
+
+		/**
+		 * Sync on each periodic flush.
+		 */
+		INTERVAL,
+
+		/**
+		 * Sync after every N lines.
+		 */
+		EVERY;
+	}
+
+	public static final LibLogFsyncPolicy NONE = //
+			new LibLogFsyncPolicy(Mode.NONE, 0);
+
+	public static final LibLogFsyncPolicy INTERVAL = //
+			new LibLogFsyncPolicy(Mode.INTERVAL, 0);
+
+	private final Mode mode;
+
+	private final int lines;
+
+	private LibLogFsyncPolicy(Mode mode, int lines) {
+		this.mode = mode;
+		this.lines = lines;
+	}
+
+	/**
+	 * Returns the sync mode.
+	 * 
+	 * @return the sync mode
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Returns the number of lines between syncs.
+	 * 
+	 * @return lines between syncs, or 0
+	 */
+	public int getLines() {
+		return lines;
+	}
+
+	@Override
+	public String toString() {
+		return (mode == Mode.EVERY) ? //
+				String.format("every-%d", lines) : //
+				mode.name().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Create a policy which syncs after every N lines.
+	 * 
+	 * @param lines lines between syncs
+	 * @return the fsync policy
+	 */
+	public static LibLogFsyncPolicy every(int lines) {
+		if (lines < 1) {
+			throw new IllegalArgumentException("Invalid fsync line count: " + lines);
+		}
+		return new LibLogFsyncPolicy(Mode.EVERY, lines);
+	}
+
+	/**
+	 * Parse an fsync policy.
+	 * 
+	 * @param policy none, interval, or every-N
+	 * @return the fsync policy
+	 */
+	public static LibLogFsyncPolicy parse(String policy) {
+		String value = policy.trim().toLowerCase(Locale.ROOT);
+		if (value.equals("none")) {
+			return NONE;
+		} else if (value.equals("interval")) {
+			return INTERVAL;
+		} else if (value.equals("every")) {
+			return every(1);
+		} else if (value.startsWith("every-")) {
+			return every(Integer.parseInt(value.substring(6)));
+		}
+
+		throw new IllegalArgumentException("Unknown fsync policy: " + policy);
+	}
+}
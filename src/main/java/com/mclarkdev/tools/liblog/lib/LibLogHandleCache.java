@@ -0,0 +1,219 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * LibLog // LibLogHandleCache
+ * 
+ * A bounded cache of open log handles, keyed by facility.
+ * 
+ * Each handle is created at most once while cached. Once more than the maximum
+ * are open the least recently used are closed; a later write reopens them.
+ * Lookups of cached handles take no locks.
+ * 
+ * @param <H> the handle type
+ */
+public class LibLogHandleCache<H extends Closeable> {
+
+	private static final class Entry<H> {
+
+		private final H handle;
+
+		private volatile long used;
+
+		private Entry(H handle) {
+			this.handle = handle;
+			this.used = System.nanoTime();
+		}
+	}
+
+	private final Function<String, H> factory;
+
+	private final int maxOpen;
+
+	private final ConcurrentHashMap<String, Entry<H>> handles = new ConcurrentHashMap<>();
+
+	private final Function<String, Entry<H>> create;
+
+	private final Object evictLock = new Object();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Create a new handle cache.
+	 * 
+	 * @param maxOpen maximum number of open handles
+	 * @param factory opens the handle for a key
+	 */
+	public LibLogHandleCache(int maxOpen, Function<String, H> factory) {
+		if (maxOpen < 1) {
+			throw new IllegalArgumentException("Invalid handle limit: " + maxOpen);
+		}
+
+		this.maxOpen = maxOpen;
+		this.factory = factory;
+		this.create = (key) -> {
+			misses.increment();
+			return new Entry<>(this.factory.apply(key));
+		};
+	}
+
+	/**
+	 * Returns the handle for a key, opening it if required.
+	 * 
+	 * @param key the handle key
+	 * @return the open handle
+	 */
+	public H get(String key) {
+
+		Entry<H> entry = handles.get(key);
+		if (entry != null) {
+			hits.increment();
+			entry.used = System.nanoTime();
+			return entry.handle;
+		}
+
+		// Open at most once per key
+		entry = handles.computeIfAbsent(key, create);
+
+		if (handles.size() > maxOpen) {
+			evict();
+		}
+		return entry.handle;
+	}
+
+	/**
+	 * Close and remove a handle.
+	 * 
+	 * @param key the handle key
+	 */
+	public void remove(String key) {
+		Entry<H> entry = handles.remove(key);
+		if (entry != null) {
+			close(entry.handle);
+		}
+	}
+
+	/**
+	 * Remove a handle which has been closed, if still cached.
+	 * 
+	 * @param key    the handle key
+	 * @param handle the closed handle
+	 */
+	public void invalidate(String key, H handle) {
+		Entry<H> entry = handles.get(key);
+		if (entry != null && entry.handle == handle) {
+			handles.remove(key, entry);
+		}
+	}
+
+	/**
+	 * Returns the currently open handles.
+	 * 
+	 * @return the open handles
+	 */
+	public Collection<H> handles() {
+		Collection<H> open = new ArrayList<>(handles.size());
+		for (Entry<H> entry : handles.values()) {
+			open.add(entry.handle);
+		}
+		return open;
+	}
+
+	/**
+	 * Close and remove all handles.
+	 */
+	public void closeAll() {
+		for (String key : handles.keySet()) {
+			remove(key);
+		}
+	}
+
+	/**
+	 * Returns the number of open handles.
+	 * 
+	 * @return number of open handles
+	 */
+	public int size() {
+		return handles.size();
+	}
+
+	/**
+	 * Returns the maximum number of open handles.
+	 * 
+	 * @return maximum open handles
+	 */
+	public int getMaxOpen() {
+		return maxOpen;
+	}
+
+	/**
+	 * Returns the number of lookups which found an open handle.
+	 * 
+	 * @return number of cache hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups which opened a handle.
+	 * 
+	 * @return number of cache misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of handles closed to stay within the limit.
+	 * 
+	 * @return number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	private void evict() {
+		synchronized (evictLock) {
+			while (handles.size() > maxOpen) {
+
+				// Find the least recently used handle
+				Map.Entry<String, Entry<H>> oldest = null;
+				for (Map.Entry<String, Entry<H>> entry : handles.entrySet()) {
+					if (oldest == null || entry.getValue().used - oldest.getValue().used < 0) {
+						oldest = entry;
+					}
+				}
+
+				if (oldest == null) {
+					return;
+				}
+
+				if (handles.remove(oldest.getKey(), oldest.getValue())) {
+					evictions.increment();
+					close(oldest.getValue().handle);
+				}
+			}
+		}
+	}
+
+	private static void close(Closeable handle) {
+		try {
+			handle.close();
+		} catch (IOException e) {
+			e.printStackTrace(System.err);
+		}
+	}
+}
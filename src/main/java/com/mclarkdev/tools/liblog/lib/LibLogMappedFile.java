@@ -0,0 +1,233 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * LibLog // LibLogMappedFile
+ * 
+ * An append-only log written through a series of memory mapped segments.
+ * 
+ * Each segment is preallocated to a fixed size and mapped into memory, so
+ * writing a line is a copy into the page cache. When a segment fills the next
+ * one is created; a closed segment is truncated to the bytes written.
+ * 
+ * Segments are named yyyyMMdd-name.N.log. When reopened, the zero-filled slack
+ * a crash leaves in the last segment is trimmed, and writing resumes there if
+ * it has room to spare.
+ */
+public class LibLogMappedFile implements Closeable {
+
+	private final File dir;
+
+	private final String name;
+
+	/**
+	 * The smallest segment, room for the largest line an encoder keeps.
+	 */
+	public static final int MIN_SEGMENT = 1024 * 1024;
+
+	private final int segmentSize;
+
+	private File segment;
+
+	private FileChannel channel;
+
+	private MappedByteBuffer mapped;
+
+	private long base;
+
+	private boolean closed = false;
+
+	/**
+	 * Create a new mapped log.
+	 * 
+	 * The first segment is created on the first write.
+	 * 
+	 * @param dir         the log directory
+	 * @param name        the log name
+	 * @param segmentSize bytes per segment, at least {@link #MIN_SEGMENT}
+	 */
+	public LibLogMappedFile(File dir, String name, int segmentSize) {
+		if (segmentSize < MIN_SEGMENT) {
+			throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+		}
+
+		this.dir = dir;
+		this.name = name;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Returns the current segment.
+	 * 
+	 * @return the segment file, or null
+	 */
+	public synchronized File getSegment() {
+		return segment;
+	}
+
+	/**
+	 * Returns true if the log has been closed.
+	 * 
+	 * @return log is closed
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Append a line to the log.
+	 * 
+	 * @param line   the encoded line
+	 * @param offset offset of the line in the array
+	 * @param length length of the line
+	 * @return false if the log has been closed
+	 * @throws IOException failed creating a segment
+	 */
+	public synchronized boolean write(byte[] line, int offset, int length) throws IOException {
+		if (closed) {
+			return false;
+		}
+
+		// Roll to a new segment if the line does not fit
+		if (mapped == null || length > mapped.remaining()) {
+
+			// An interrupt would close the channel, hold it until finished
+			boolean interrupted = Thread.interrupted();
+			try {
+				roll(length);
+			} finally {
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		mapped.put(line, offset, length);
+		return true;
+	}
+
+	/**
+	 * Close the current segment.
+	 * 
+	 * @throws IOException failed truncating the segment
+	 */
+	public synchronized void close() throws IOException {
+		closed = true;
+
+		boolean interrupted = Thread.interrupted();
+		try {
+			closeSegment();
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void roll(int length) throws IOException {
+		boolean reopen = (segment == null);
+		closeSegment();
+
+		// Find the last segment
+		String prefix = String.format("%s-%s", //
+				LibLogTimestamp.format(LibLogTimestamp.now()).substring(0, 8), name);
+		File last = null;
+		File next;
+		int sequence = 0;
+		while ((next = new File(dir, String.format("%s.%d.log", prefix, sequence++))).exists()) {
+			last = next;
+		}
+
+		// A segment not closed cleanly still holds its preallocated slack
+		if (reopen && (last != null)) {
+			trim(last);
+		}
+
+		// Resume the last segment if it has room, otherwise start the next
+		boolean resume = reopen && (last != null) //
+				&& (last.length() + length <= segmentSize);
+		File target = resume ? last : next;
+
+		// Preallocate and map the segment
+		FileChannel file = FileChannel.open(target.toPath(), //
+				resume ? StandardOpenOption.READ : StandardOpenOption.CREATE_NEW, //
+				StandardOpenOption.READ, //
+				StandardOpenOption.WRITE);
+		try {
+			long start = file.size();
+			mapped = file.map(FileChannel.MapMode.READ_WRITE, //
+					start, Math.max(segmentSize - start, length));
+			base = start;
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+
+		segment = target;
+		channel = file;
+	}
+
+	/**
+	 * Truncate a segment after its last written byte.
+	 * 
+	 * Lines always end with a newline, so trailing zeros are never data.
+	 */
+	private static void trim(File target) throws IOException {
+		try (FileChannel file = FileChannel.open(target.toPath(), //
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+			ByteBuffer block = ByteBuffer.allocate(64 * 1024);
+			long end = file.size();
+			while (end > 0) {
+
+				// Read backwards until a written byte is found
+				long start = Math.max(0, end - block.capacity());
+				block.clear().limit((int) (end - start));
+				while (block.hasRemaining()) {
+					if (file.read(block, start + block.position()) < 0) {
+						break;
+					}
+				}
+
+				int x = block.position();
+				while (x > 0 && block.get(x - 1) == 0) {
+					x--;
+				}
+				if (x > 0) {
+					end = start + x;
+					break;
+				}
+				end = start;
+			}
+
+			if (end < file.size()) {
+				file.truncate(end);
+			}
+		}
+	}
+
+	private void closeSegment() throws IOException {
+		if (mapped == null) {
+			return;
+		}
+
+		long written = base + mapped.position();
+		LibLogUnmapper.unmap(mapped);
+		mapped = null;
+
+		// Remove the unused slack
+		try {
+			channel.truncate(written);
+		} finally {
+			channel.close();
+			channel = null;
+		}
+	}
+}
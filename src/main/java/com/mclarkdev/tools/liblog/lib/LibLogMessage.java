@@ -1,8 +1,8 @@
 package com.mclarkdev.tools.liblog.lib;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.Locale;
 
 import com.mclarkdev.tools.liblog.LibLog;
 
@@ -13,55 +13,180 @@ public class LibLogMessage {
 
 	public enum LogLevel {
 		DEBUG, INFO, WARN, ERROR;
+
+		/**
+		 * Returns true if this level is at or above the threshold.
+		 * 
+		 * @param threshold the minimum level
+		 * @return level meets the threshold
+		 */
+		public boolean atLeast(LogLevel threshold) {
+			return ordinal() >= threshold.ordinal();
+		}
+
+		/**
+		 * Parse a level by name, ignoring case.
+		 * 
+		 * @param name the level name
+		 * @return the log level
+		 */
+		public static LogLevel parse(String name) {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT));
+		}
 	}
 
+	/**
+	 * The message time-stamp format.
+	 * 
+	 * @deprecated not thread-safe, use {@link LibLogTimestamp#format(long)}
+	 */
+	@Deprecated
 	public static final SimpleDateFormat _DFORMAT = //
-			new SimpleDateFormat("YYYYMMdd HH:mm:ss");
+			new SimpleDateFormat("yyyyMMdd HH:mm:ss");
 
 	private final long time;
 	private final String stamp;
 
 	private final LogLevel level;
 	private final String facility;
-	private final String message;
+	private final String format;
+	private final Object[] args;
 	private final Throwable tossed;
 
+	// Set if the format is a code, looked up on first use
+	private final LibLogCatalog catalog;
+
 	private final String className;
 	private final long classLine;
 
+	// Rendered on first use, shared by all writers
+	private volatile String message;
+	private volatile String logLine;
+	private volatile String debugLine;
+	private volatile byte[] logBytes;
+	private volatile byte[] debugBytes;
+
 	/**
 	 * Build a new LibLogMessage.
 	 * 
+	 * The calling location is captured only if required by the configuration.
+	 * 
+	 * @param level    log level
 	 * @param facility log facility
 	 * @param message  log message
 	 * @param tossed   optional throwable
 	 */
 	public LibLogMessage(LogLevel level, String facility, String message, Throwable tossed) {
+		this(level, facility, message, tossed, LibLog.cfg().captureLocation());
+	}
 
-		this.time = System.currentTimeMillis();
-		this.stamp = _DFORMAT.format(time);
+	/**
+	 * Build a new LibLogMessage.
+	 * 
+	 * @param level    log level
+	 * @param facility log facility
+	 * @param message  log message
+	 * @param tossed   optional throwable
+	 * @param locate   capture the calling location
+	 */
+	public LibLogMessage(LogLevel level, String facility, String message, Throwable tossed, boolean locate) {
+		this(level, facility, message, null, tossed, locate);
+	}
+
+	/**
+	 * Build a new LibLogMessage from a format and arguments.
+	 * 
+	 * The message is formatted on first use.
+	 * 
+	 * @param level    log level
+	 * @param facility log facility
+	 * @param format   log message format
+	 * @param args     log message arguments, or null if not a format
+	 * @param tossed   optional throwable
+	 */
+	public LibLogMessage(LogLevel level, String facility, String format, Object[] args, Throwable tossed) {
+		this(level, facility, format, args, tossed, LibLog.cfg().captureLocation());
+	}
+
+	/**
+	 * Build a new LibLogMessage from a format and arguments.
+	 * 
+	 * The message is formatted on first use.
+	 * 
+	 * @param level    log level
+	 * @param facility log facility
+	 * @param format   log message format
+	 * @param args     log message arguments, or null if not a format
+	 * @param tossed   optional throwable
+	 * @param locate   capture the calling location
+	 */
+	public LibLogMessage(LogLevel level, String facility, String format, Object[] args, Throwable tossed,
+			boolean locate) {
+		this(level, facility, null, format, args, tossed, locate);
+	}
+
+	/**
+	 * Build a new LibLogMessage from a localized message code and arguments.
+	 * 
+	 * The code is looked up in the catalog and formatted on first use.
+	 * 
+	 * @param level    log level
+	 * @param facility log facility
+	 * @param catalog  the catalog of localized messages
+	 * @param code     localized message code
+	 * @param args     log message arguments, or null
+	 * @param tossed   optional throwable
+	 * @param locate   capture the calling location
+	 */
+	public LibLogMessage(LogLevel level, String facility, LibLogCatalog catalog, String code, Object[] args,
+			Throwable tossed, boolean locate) {
+
+		this.time = LibLogTimestamp.now();
+		this.stamp = LibLogTimestamp.format(time);
 
 		this.level = level;
 		this.facility = facility;
+		this.format = code;
+		this.args = args;
 		this.tossed = tossed;
+		this.catalog = catalog;
 
-		StackTraceElement[] trace = Thread.currentThread().getStackTrace();
+		// get call location
+		StackTraceElement caller = (locate) ? //
+				LibLogCallerLocator.locate() : null;
 
-		// get call trace
-		for (int x = 2;; x++) {
+		this.className = (caller != null) ? caller.getClassName() : null;
+		this.classLine = (caller != null) ? caller.getLineNumber() : -1;
+	}
+
+	/**
+	 * Restore a LibLogMessage which has already been rendered.
+	 * 
+	 * Used when reading messages back from a journal or the network.
+	 * 
+	 * @param time      time of message generation
+	 * @param level     log level
+	 * @param facility  log facility
+	 * @param message   the rendered message
+	 * @param className calling class, or null
+	 * @param classLine calling line, or -1
+	 */
+	public LibLogMessage(long time, LogLevel level, String facility, String message, //
+			String className, long classLine) {
 
-			// first occurrence of not LibLog
-			if (!trace[x].getClassName().equals(LibLog.class.getName())) {
+		this.time = time;
+		this.stamp = LibLogTimestamp.format(time);
 
-				this.className = trace[x].getClassName();
-				this.classLine = trace[x].getLineNumber();
-				break;
-			}
-		}
+		this.level = level;
+		this.facility = facility;
+		this.format = message;
+		this.args = null;
+		this.tossed = null;
+		this.catalog = null;
+		this.message = message;
 
-		// build the message
-		this.message = message + //
-				((tossed != null) ? ("\n" + getLoggedThrowableString()) : "");
+		this.className = className;
+		this.classLine = classLine;
 	}
 
 	/**
@@ -106,7 +231,18 @@ public class LibLogMessage {
 	 * @return the message
 	 */
 	public String getLoggedMessage() {
-		return message;
+		String text = message;
+		if (text == null) {
+
+			// format the message
+			text = (catalog != null) ? catalog.lookup(format).format(args) //
+					: (args != null) ? LibLog.f(format, args) : format;
+			if (tossed != null) {
+				text = text + "\n" + getLoggedThrowableString();
+			}
+			message = text;
+		}
+		return text;
 	}
 
 	/**
@@ -121,26 +257,21 @@ public class LibLogMessage {
 	/**
 	 * Returns the logged throwable wrapped with header / footer.
 	 * 
+	 * Rendered by the configured {@link LibLogStackRenderer}.
+	 * 
 	 * @return throwable as a string
 	 */
 	public String getLoggedThrowableString() {
 		if (tossed == null) {
 			return null;
 		}
-
-		StringWriter sw = new StringWriter();
-		try (PrintWriter pw = new PrintWriter(sw)) {
-			tossed.printStackTrace(pw);
-			return String.format(//
-					" --- STACK BEGIN ---\n%s\n%s --- STACK END ---", //
-					tossed.getClass().getName(), sw.toString());
-		}
+		return LibLog.cfg().getStackRenderer().render(tossed);
 	}
 
 	/**
 	 * Returns the class name that invoked the log operation.
 	 * 
-	 * @return name of calling class
+	 * @return name of calling class, or null if not captured
 	 */
 	public String getLoggedClassName() {
 		return className;
@@ -149,21 +280,42 @@ public class LibLogMessage {
 	/**
 	 * Returns the line number that invoked the log operation.
 	 * 
-	 * @return line number in calling class
+	 * @return line number in calling class, or -1 if not captured
 	 */
 	public long getLoggedLineNumber() {
 		return classLine;
 	}
 
+	/**
+	 * Returns a copy holding only the rendered message, for messages kept a long
+	 * time.
+	 * 
+	 * The copy does not keep the arguments, the throwable or any built lines.
+	 * 
+	 * @return the rendered copy
+	 */
+	public LibLogMessage detach() {
+		return new LibLogMessage(time, level, facility, getLoggedMessage(), className, classLine);
+	}
+
 	/**
 	 * Build a basic log line.
 	 * 
 	 * @return formatted log line
 	 */
 	public String buildLogLine() {
-		return String.format(//
-				" +%s - %s [ %s ] - %s", //
-				stamp, level, facility, message);
+		String line = logLine;
+		if (line == null) {
+			String text = getLoggedMessage();
+			line = new StringBuilder(64 + text.length())//
+					.append(" +").append(stamp)//
+					.append(" - ").append(level)//
+					.append(" [ ").append(facility)//
+					.append(" ] - ").append(text)//
+					.toString();
+			logLine = line;
+		}
+		return line;
 	}
 
 	/**
@@ -172,9 +324,51 @@ public class LibLogMessage {
 	 * @return formatted log line with debug information
 	 */
 	public String buildDebugLine() {
-		return String.format(//
-				" +%s - %s [ %s @ %s : %d ] - %s", //
-				stamp, level, facility, className, classLine, message);
+		String line = debugLine;
+		if (line == null) {
+			String text = getLoggedMessage();
+			line = new StringBuilder(128 + text.length())//
+					.append(" +").append(stamp)//
+					.append(" - ").append(level)//
+					.append(" [ ").append(facility)//
+					.append(" @ ").append(className)//
+					.append(" : ").append(classLine)//
+					.append(" ] - ").append(text)//
+					.toString();
+			debugLine = line;
+		}
+		return line;
+	}
+
+	/**
+	 * Build a log line, with or without debugging information.
+	 * 
+	 * @param debug include debugging information
+	 * @return formatted log line
+	 */
+	public String buildLine(boolean debug) {
+		return (debug) ? buildDebugLine() : buildLogLine();
+	}
+
+	/**
+	 * Build a UTF-8 encoded log line, with or without debugging information.
+	 * 
+	 * The returned array is shared and must not be modified.
+	 * 
+	 * @param debug include debugging information
+	 * @return encoded log line
+	 */
+	public byte[] buildBytes(boolean debug) {
+		byte[] bytes = (debug) ? debugBytes : logBytes;
+		if (bytes == null) {
+			bytes = buildLine(debug).getBytes(StandardCharsets.UTF_8);
+			if (debug) {
+				debugBytes = bytes;
+			} else {
+				logBytes = bytes;
+			}
+		}
+		return bytes;
 	}
 
 	/**
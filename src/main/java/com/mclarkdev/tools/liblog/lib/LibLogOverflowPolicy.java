@@ -0,0 +1,138 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.util.Locale;
+
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
+
+/**
+ * LibLog // LibLogOverflowPolicy
+ * 
+ * What to do with a message when a queue is full.
+ * 
+ * Parsed from block, drop, drop-oldest, or drop-below:LEVEL.
+ */
+public final class LibLogOverflowPolicy {
+
+	public enum Action {
+
+		/**
+		 * Wait for space in the queue.
+		 */
+		BLOCK,
+
+		/**
+		 * Discard the new message.
+		 */
+		DROP,
+
+		/**
+		 * Discard the oldest queued message to make room.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Discard messages below a level, wait for space otherwise.
+		 */
+		DROP_BELOW;
+	}
+
+	public static final LibLogOverflowPolicy BLOCK = //
+			new LibLogOverflowPolicy(Action.BLOCK, null);
+
+	public static final LibLogOverflowPolicy DROP = //
+			new LibLogOverflowPolicy(Action.DROP, null);
+
+	public static final LibLogOverflowPolicy DROP_OLDEST = //
+			new LibLogOverflowPolicy(Action.DROP_OLDEST, null);
+
+	private final Action action;
+
+	private final LogLevel level;
+
+	private LibLogOverflowPolicy(Action action, LogLevel level) {
+		this.action = action;
+		this.level = level;
+	}
+
+	/**
+	 * Returns the overflow action.
+	 * 
+	 * @return the overflow action
+	 */
+	public Action getAction() {
+		return action;
+	}
+
+	/**
+	 * Returns the level below which messages are dropped.
+	 * 
+	 * @return the drop level, or null
+	 */
+	public LogLevel getLevel() {
+		return level;
+	}
+
+	/**
+	 * Returns true if a message of the given level should wait for space.
+	 * 
+	 * @param messageLevel the message level
+	 * @return wait for space, otherwise drop
+	 */
+	public boolean blocks(LogLevel messageLevel) {
+		switch (action) {
+		case BLOCK:
+			return true;
+		case DROP_BELOW:
+			return messageLevel.atLeast(level);
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Returns true if the oldest queued message is discarded to make room.
+	 * 
+	 * @return discard the oldest message
+	 */
+	public boolean dropsOldest() {
+		return (action == Action.DROP_OLDEST);
+	}
+
+	@Override
+	public String toString() {
+		return (level != null) ? //
+				String.format("drop-below:%s", level) : //
+				action.name().toLowerCase(Locale.ROOT).replace('_', '-');
+	}
+
+	/**
+	 * Create a policy which drops messages below a level.
+	 * 
+	 * @param level the minimum level to keep
+	 * @return the overflow policy
+	 */
+	public static LibLogOverflowPolicy dropBelow(LogLevel level) {
+		return new LibLogOverflowPolicy(Action.DROP_BELOW, level);
+	}
+
+	/**
+	 * Parse an overflow policy.
+	 * 
+	 * @param policy block, drop, drop-oldest, or drop-below:LEVEL
+	 * @return the overflow policy
+	 */
+	public static LibLogOverflowPolicy parse(String policy) {
+		String value = policy.trim().toLowerCase(Locale.ROOT);
+		if (value.equals("block")) {
+			return BLOCK;
+		} else if (value.equals("drop")) {
+			return DROP;
+		} else if (value.equals("drop-oldest")) {
+			return DROP_OLDEST;
+		} else if (value.startsWith("drop-below:")) {
+			return dropBelow(LogLevel.parse(value.substring(11)));
+		}
+
+		throw new IllegalArgumentException("Unknown overflow policy: " + policy);
+	}
+}
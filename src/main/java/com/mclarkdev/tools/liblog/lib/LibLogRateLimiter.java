@@ -0,0 +1,389 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.mclarkdev.tools.liblog.LibLog;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
+
+/**
+ * LibLog // LibLogRateLimiter
+ * 
+ * Limits the rate of messages per facility and per call site, and collapses
+ * identical consecutive messages, before a message is written.
+ * 
+ * A call site is a facility and a message format. Each limit allows a number
+ * of messages per period, bursting up to that number. Once messages pass
+ * again, the number dropped is logged. With repeat suppression, a message
+ * rendering the same as the last of its facility, with an exception of the
+ * same type and message, is counted rather than written. The count is logged
+ * with the next different message, or when the window ends.
+ * 
+ * All checks are lock-free.
+ */
+public class LibLogRateLimiter {
+
+	// Call sites tracked per facility before starting over
+	private static final int MAX_SITES = 4096;
+
+	/**
+	 * A number of messages per period.
+	 */
+	public static final class Rate {
+
+		private final long count;
+		private final long interval;
+
+		/**
+		 * Create a new rate.
+		 * 
+		 * @param count  messages per period
+		 * @param period the period
+		 * @param unit   unit of the period
+		 */
+		public Rate(long count, long period, TimeUnit unit) {
+			if (count < 1 || period < 1) {
+				throw new IllegalArgumentException("Invalid rate: " + count + "/" + period);
+			}
+
+			this.count = count;
+			this.interval = Math.max(1, unit.toNanos(period) / count);
+		}
+
+		/**
+		 * Parse a rate. (100/s, 6000/m, 10000/h)
+		 * 
+		 * @param rate the rate
+		 * @return the parsed rate
+		 */
+		public static Rate parse(String rate) {
+			String[] parts = rate.trim().split("/", 2);
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("Invalid rate: " + rate);
+			}
+
+			long count = Long.parseLong(parts[0].trim());
+			switch (parts[1].trim().toLowerCase()) {
+			case "s":
+				return new Rate(count, 1, TimeUnit.SECONDS);
+			case "m":
+				return new Rate(count, 1, TimeUnit.MINUTES);
+			case "h":
+				return new Rate(count, 1, TimeUnit.HOURS);
+			default:
+				throw new IllegalArgumentException("Invalid rate: " + rate);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d/%dns", count, interval * count);
+		}
+	}
+
+	/**
+	 * A token bucket, kept as the time it next has a token. (GCRA)
+	 */
+	private static final class Bucket {
+
+		private final long interval;
+		private final long tolerance;
+
+		private final AtomicLong next;
+		private final AtomicLong dropped = new AtomicLong();
+
+		Bucket(Rate rate, long now) {
+			this.interval = rate.interval;
+			this.tolerance = (rate.count - 1) * rate.interval;
+			this.next = new AtomicLong(now);
+		}
+
+		boolean take(long now) {
+			while (true) {
+				long at = next.get();
+				long start = (at - now < 0) ? now : at;
+				if (start - now > tolerance) {
+					dropped.incrementAndGet();
+					return false;
+				}
+
+				if (next.compareAndSet(at, start + interval)) {
+					return true;
+				}
+			}
+		}
+
+		long takeDropped() {
+			long count = dropped.get();
+			return (count > 0 && dropped.compareAndSet(count, 0)) ? count : 0;
+		}
+	}
+
+	/**
+	 * The last message of a facility, as rendered.
+	 */
+	private static final class Repeat {
+
+		private final LogLevel level;
+		private final String text;
+		private final Class<?> thrown;
+		private final String thrownMessage;
+		private final long since;
+
+		// Repeats counted, negative once reported
+		private final AtomicLong count = new AtomicLong();
+
+		Repeat(LogLevel level, String text, Throwable tossed, long since) {
+			this.level = level;
+			this.text = text;
+			this.thrown = (tossed != null) ? tossed.getClass() : null;
+			this.thrownMessage = (tossed != null) ? tossed.getMessage() : null;
+			this.since = since;
+		}
+
+		boolean matches(LogLevel level, String text, Throwable tossed) {
+			if (this.level != level || !this.text.equals(text)) {
+				return false;
+			}
+
+			if (tossed == null || thrown == null) {
+				return tossed == null && thrown == null;
+			}
+			return thrown == tossed.getClass() && Objects.equals(thrownMessage, tossed.getMessage());
+		}
+	}
+
+	private final Rate facilityRate;
+
+	private final Map<String, Rate> facilityRates;
+
+	private final Rate siteRate;
+
+	private final long repeatWindow;
+
+	private final Map<String, Bucket> facilities = new ConcurrentHashMap<>();
+
+	private final Map<String, Map<String, Bucket>> sites = new ConcurrentHashMap<>();
+
+	private final Map<String, AtomicReference<Repeat>> repeats = new ConcurrentHashMap<>();
+
+	private final LongAdder suppressed = new LongAdder();
+
+	/**
+	 * Create a new rate limiter.
+	 * 
+	 * @param facilityRate  limit of each facility, or null
+	 * @param facilityRates limits of specific facilities
+	 * @param siteRate      limit of each call site, or null
+	 * @param repeatWindow  ms to collapse repeated messages for, or 0
+	 */
+	public LibLogRateLimiter(Rate facilityRate, Map<String, Rate> facilityRates, //
+			Rate siteRate, long repeatWindow) {
+
+		this.facilityRate = facilityRate;
+		this.facilityRates = new HashMap<>(facilityRates);
+		this.siteRate = siteRate;
+		this.repeatWindow = TimeUnit.MILLISECONDS.toNanos(repeatWindow);
+	}
+
+	/**
+	 * Create a rate limiter from the environment.
+	 * 
+	 * LOG_RATE (each facility), LOG_RATES (facility=rate;...), LOG_SITE_RATE (each
+	 * call site), LOG_REPEATS (window in ms)
+	 * 
+	 * @return the rate limiter, or null if no limits are set
+	 */
+	public static LibLogRateLimiter fromEnv() {
+
+		String rate = System.getenv("LOG_RATE");
+		String rates = System.getenv("LOG_RATES");
+		String siteRate = System.getenv("LOG_SITE_RATE");
+		String repeats = System.getenv("LOG_REPEATS");
+
+		if (rate == null && rates == null && siteRate == null && repeats == null) {
+			return null;
+		}
+
+		Map<String, Rate> facilityRates = new HashMap<>();
+		if (rates != null) {
+			for (String facilityRate : rates.split(";")) {
+				String[] parts = facilityRate.split("=", 2);
+				if (parts.length != 2) {
+					throw new IllegalArgumentException("Invalid facility rate: " + facilityRate);
+				}
+				facilityRates.put(parts[0].trim(), Rate.parse(parts[1]));
+			}
+		}
+
+		return new LibLogRateLimiter(//
+				(rate != null) ? Rate.parse(rate) : null, facilityRates, //
+				(siteRate != null) ? Rate.parse(siteRate) : null, //
+				(repeats != null) ? Long.parseLong(repeats) : 0);
+	}
+
+	/**
+	 * Returns the number of messages suppressed by limits or as repeats.
+	 * 
+	 * @return messages suppressed
+	 */
+	public long getSuppressed() {
+		return suppressed.sum();
+	}
+
+	/**
+	 * Returns true if repeats are compared, needing messages rendered first.
+	 * 
+	 * @return repeats are collapsed
+	 */
+	public boolean comparesRepeats() {
+		return repeatWindow > 0;
+	}
+
+	/**
+	 * Returns true if a message may be logged.
+	 * 
+	 * @param level    the message level
+	 * @param facility the message facility
+	 * @param format   the message, or its format
+	 * @param text     the rendered message, or null if not a format
+	 * @param tossed   the exception, or null
+	 * @return message may be logged
+	 */
+	public boolean admit(LogLevel level, String facility, String format, String text, Throwable tossed) {
+		String key = (facility != null) ? facility : "";
+		long now = System.nanoTime();
+
+		// Collapse identical consecutive messages
+		if (repeatWindow > 0 && repeated(key, level, facility, //
+				(text != null) ? text : String.valueOf(format), tossed, now)) {
+			suppressed.increment();
+			return false;
+		}
+
+		// Limit the call site
+		if (siteRate != null && format != null) {
+			Bucket site = site(key, format, now);
+			if (!site.take(now)) {
+				suppressed.increment();
+				return false;
+			}
+			report(site, facility, format);
+		}
+
+		// Limit the facility
+		Bucket limit = facility(key, now);
+		if (limit != null) {
+			if (!limit.take(now)) {
+				suppressed.increment();
+				return false;
+			}
+			report(limit, facility, null);
+		}
+		return true;
+	}
+
+	private boolean repeated(String key, LogLevel level, String facility, //
+			String text, Throwable tossed, long now) {
+
+		AtomicReference<Repeat> last = repeats.get(key);
+		if (last == null) {
+			last = repeats.computeIfAbsent(key, (k) -> new AtomicReference<>());
+		}
+
+		while (true) {
+			Repeat repeat = last.get();
+			if (repeat != null && (now - repeat.since) < repeatWindow //
+					&& repeat.matches(level, text, tossed)) {
+
+				// Report the count once the window ends, if nothing else does
+				long count = repeat.count.incrementAndGet();
+				if (count == 1) {
+					expire(last, repeat, facility, (repeat.since + repeatWindow) - now);
+				}
+				if (count > 0) {
+					return true;
+				}
+			}
+
+			if (last.compareAndSet(repeat, new Repeat(level, text, tossed, now))) {
+				if (repeat != null) {
+					report(repeat, facility);
+				}
+				return false;
+			}
+		}
+	}
+
+	private static void expire(final AtomicReference<Repeat> last, final Repeat repeat, //
+			final String facility, long delay) {
+
+		LibLogScheduler.schedule(new Runnable() {
+			public void run() {
+				if (last.compareAndSet(repeat, null)) {
+					report(repeat, facility);
+				}
+			}
+		}, delay, TimeUnit.NANOSECONDS);
+	}
+
+	private static void report(Repeat repeat, String facility) {
+		long count = repeat.count.getAndSet(Long.MIN_VALUE);
+		if (count > 0) {
+			LibLog.log(new LibLogMessage(repeat.level, facility, //
+					"Last message repeated %d times", new Object[] { count }, null));
+		}
+	}
+
+	private Bucket site(String key, String format, long now) {
+		Map<String, Bucket> facilitySites = sites.get(key);
+		if (facilitySites == null) {
+			facilitySites = sites.computeIfAbsent(key, (k) -> new ConcurrentHashMap<>());
+		}
+
+		Bucket site = facilitySites.get(format);
+		if (site == null) {
+
+			// Messages built without a constant format would grow without bound
+			if (facilitySites.size() >= MAX_SITES) {
+				facilitySites.clear();
+			}
+			site = facilitySites.computeIfAbsent(format, (k) -> new Bucket(siteRate, now));
+		}
+		return site;
+	}
+
+	private Bucket facility(String key, long now) {
+		Bucket limit = facilities.get(key);
+		if (limit != null) {
+			return limit;
+		}
+
+		Rate rate = facilityRates.getOrDefault(key, facilityRate);
+		if (rate == null) {
+			return null;
+		}
+		return facilities.computeIfAbsent(key, (k) -> new Bucket(rate, now));
+	}
+
+	private static void report(Bucket bucket, String facility, String format) {
+		long dropped = bucket.takeDropped();
+		if (dropped == 0) {
+			return;
+		}
+
+		if (format != null) {
+			LibLog.log(new LibLogMessage(LogLevel.WARN, facility, //
+					"Rate limited %d messages (%s)", new Object[] { dropped, format }, null));
+		} else {
+			LibLog.log(new LibLogMessage(LogLevel.WARN, facility, //
+					"Rate limited %d messages", new Object[] { dropped }, null));
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LibLog // LibLogRingBuffer
+ * 
+ * A preallocated, bounded, lock-free multi-producer ring buffer.
+ * 
+ * Each slot carries a sequence number which tells producers and consumers
+ * whether it is free or filled for the current lap, so claiming a slot is a
+ * single CAS and the size is always O(1).
+ *
+ * @param <T> the element type
+ */
+public class LibLogRingBuffer<T> {
+
+	private final int mask;
+
+	private final Object[] items;
+
+	private final AtomicLongArray sequences;
+
+	// Next slot to be read
+	private final AtomicLong head = new AtomicLong();
+
+	// Next slot to be written
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Create a new ring buffer.
+	 * 
+	 * @param capacity minimum capacity, rounded up to a power of two
+	 */
+	public LibLogRingBuffer(int capacity) {
+		if (capacity < 2 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity - 1) << 1;
+
+		this.mask = size - 1;
+		this.items = new Object[size];
+		this.sequences = new AtomicLongArray(size);
+		for (int x = 0; x < size; x++) {
+			sequences.set(x, x);
+		}
+	}
+
+	/**
+	 * Returns the number of slots in the buffer.
+	 * 
+	 * @return the buffer capacity
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * Returns the number of items in the buffer.
+	 * 
+	 * @return the buffer size
+	 */
+	public int size() {
+		long size = tail.get() - head.get();
+		return (int) Math.max(0, Math.min(size, capacity()));
+	}
+
+	/**
+	 * Returns true if the buffer is empty.
+	 * 
+	 * @return buffer is empty
+	 */
+	public boolean isEmpty() {
+		return tail.get() == head.get();
+	}
+
+	/**
+	 * Add an item to the buffer.
+	 * 
+	 * @param item the item to add
+	 * @return false if the buffer is full
+	 */
+	public boolean offer(T item) {
+		long pos = tail.get();
+		for (;;) {
+			int slot = (int) (pos & mask);
+			long diff = sequences.get(slot) - pos;
+
+			if (diff == 0) {
+
+				// Slot is free, try to claim it
+				if (tail.compareAndSet(pos, pos + 1)) {
+					items[slot] = item;
+					sequences.lazySet(slot, pos + 1);
+					return true;
+				}
+			} else if (diff < 0) {
+
+				// Slot still holds the previous lap
+				return false;
+			}
+
+			pos = tail.get();
+		}
+	}
+
+	/**
+	 * Remove the oldest item from the buffer.
+	 * 
+	 * @return the item, or null if empty
+	 */
+	@SuppressWarnings("unchecked")
+	public T poll() {
+		long pos = head.get();
+		for (;;) {
+			int slot = (int) (pos & mask);
+			long diff = sequences.get(slot) - (pos + 1);
+
+			if (diff == 0) {
+
+				// Slot is filled, try to claim it
+				if (head.compareAndSet(pos, pos + 1)) {
+					T item = (T) items[slot];
+					items[slot] = null;
+					sequences.lazySet(slot, pos + mask + 1);
+					return item;
+				}
+			} else if (diff < 0) {
+
+				// Slot not yet written
+				return null;
+			}
+
+			pos = head.get();
+		}
+	}
+}
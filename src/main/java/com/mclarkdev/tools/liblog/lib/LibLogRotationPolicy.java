@@ -0,0 +1,169 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Locale;
+
+/**
+ * LibLog // LibLogRotationPolicy
+ * 
+ * When log files are closed and a new file started.
+ * 
+ * Files rotate every interval, aligned to local midnight, and optionally once
+ * they reach a maximum size. Rotated files may be compressed in the background.
+ */
+public final class LibLogRotationPolicy {
+
+	private static final long _1S = (1000);
+	private static final long _1M = (_1S * 60);
+	private static final long _1H = (_1M * 60);
+	private static final long _1D = (_1H * 24);
+
+	/**
+	 * Rotate daily at midnight, without a size limit or compression.
+	 */
+	public static final LibLogRotationPolicy DAILY = //
+			new LibLogRotationPolicy(_1D, 0, false);
+
+	private final long interval;
+
+	private final long maxSize;
+
+	private final boolean compress;
+
+	/**
+	 * Create a new rotation policy.
+	 * 
+	 * @param interval milliseconds between rotations, up to one day
+	 * @param maxSize  maximum file size in bytes, or 0
+	 * @param compress gzip rotated files
+	 */
+	public LibLogRotationPolicy(long interval, long maxSize, boolean compress) {
+		if (interval < _1S || interval > _1D) {
+			throw new IllegalArgumentException("Invalid rotation interval: " + interval);
+		}
+
+		this.interval = interval;
+		this.maxSize = maxSize;
+		this.compress = compress;
+	}
+
+	/**
+	 * Returns the time between rotations.
+	 * 
+	 * @return the interval in milliseconds
+	 */
+	public long getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Returns the maximum file size.
+	 * 
+	 * @return the size in bytes, or 0
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Returns true if rotated files are compressed.
+	 * 
+	 * @return compress rotated files
+	 */
+	public boolean isCompressed() {
+		return compress;
+	}
+
+	/**
+	 * Returns true if writing to a file would exceed the maximum size.
+	 * 
+	 * @param size   the current file size
+	 * @param length bytes to be written
+	 * @return the file should be rotated first
+	 */
+	public boolean exceeds(long size, long length) {
+		return (maxSize > 0) && (size > 0) && (size + length > maxSize);
+	}
+
+	/**
+	 * Returns the time of the next rotation.
+	 * 
+	 * @param now the current time
+	 * @return the next rotation time
+	 */
+	public long nextRotation(long now) {
+		ZoneId zone = ZoneId.systemDefault();
+		LocalDate today = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+
+		long midnight = today.atStartOfDay(zone).toInstant().toEpochMilli();
+		long tomorrow = today.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+
+		// Next interval since midnight, but no later than the next midnight
+		long next = midnight + (((now - midnight) / interval) + 1) * interval;
+		return Math.min(next, tomorrow);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("rotate=%dms, maxSize=%d, compress=%s", //
+				interval, maxSize, (compress ? "gzip" : "none"));
+	}
+
+	/**
+	 * Parse a rotation policy.
+	 * 
+	 * @param rotate   interval as a number of d, h, m, or s (1d)
+	 * @param maxSize  size as a number of bytes, k, m, or g (none)
+	 * @param compress gzip or none (none)
+	 * @return the rotation policy
+	 */
+	public static LibLogRotationPolicy parse(String rotate, String maxSize, String compress) {
+
+		long interval = (rotate != null) ? parseInterval(rotate) : _1D;
+		long size = (maxSize != null) ? parseSize(maxSize) : 0;
+
+		boolean gzip = false;
+		if (compress != null) {
+			String value = compress.trim().toLowerCase(Locale.ROOT);
+			if (value.equals("gzip")) {
+				gzip = true;
+			} else if (!value.equals("none")) {
+				throw new IllegalArgumentException("Unknown compression: " + compress);
+			}
+		}
+
+		return new LibLogRotationPolicy(interval, size, gzip);
+	}
+
+	private static long parseInterval(String interval) {
+		String value = interval.trim().toLowerCase(Locale.ROOT);
+		switch (value.charAt(value.length() - 1)) {
+		case 'd':
+			return _1D * Long.parseLong(value.substring(0, value.length() - 1));
+		case 'h':
+			return _1H * Long.parseLong(value.substring(0, value.length() - 1));
+		case 'm':
+			return _1M * Long.parseLong(value.substring(0, value.length() - 1));
+		case 's':
+			return _1S * Long.parseLong(value.substring(0, value.length() - 1));
+		default:
+			return Long.parseLong(value);
+		}
+	}
+
+	private static long parseSize(String size) {
+		String value = size.trim().toLowerCase(Locale.ROOT);
+		switch (value.charAt(value.length() - 1)) {
+		case 'g':
+			return (1L << 30) * Long.parseLong(value.substring(0, value.length() - 1));
+		case 'm':
+			return (1L << 20) * Long.parseLong(value.substring(0, value.length() - 1));
+		case 'k':
+			return (1L << 10) * Long.parseLong(value.substring(0, value.length() - 1));
+		default:
+			return Long.parseLong(value);
+		}
+	}
+}
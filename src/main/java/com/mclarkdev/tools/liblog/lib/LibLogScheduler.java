@@ -0,0 +1,111 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LibLog // LibLogScheduler
+ * 
+ * Runs the delayed tasks of all log writers, such as flush and linger timers,
+ * on a small shared pool of daemon threads. Timers are only armed while there
+ * is work waiting.
+ * 
+ * Writers which need a thread of their own get one here too, a virtual thread
+ * where the runtime supports them and LOG_VIRTUAL_THREADS is set. Tasks must
+ * not block, they delay the tasks of other writers; blocking I/O is handed to
+ * the writer's own thread. (LOG_SCHEDULER_THREADS=1)
+ */
+public final class LibLogScheduler {
+
+	private static final ScheduledThreadPoolExecutor scheduler;
+
+	// Thread.ofVirtual() and Thread.Builder methods, or null
+	private static final Method ofVirtual;
+	private static final Method builderName;
+	private static final Method builderUnstarted;
+
+	static {
+		String threads = System.getenv("LOG_SCHEDULER_THREADS");
+		scheduler = new ScheduledThreadPoolExecutor(//
+				(threads != null) ? Integer.parseInt(threads) : 1, //
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "LibLogScheduler");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		scheduler.setRemoveOnCancelPolicy(true);
+		scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+		Method virtual = null;
+		Method name = null;
+		Method unstarted = null;
+		if ("true".equals(System.getenv("LOG_VIRTUAL_THREADS"))) {
+			try {
+				Class<?> builder = Class.forName("java.lang.Thread$Builder");
+				virtual = Thread.class.getMethod("ofVirtual");
+				name = builder.getMethod("name", String.class);
+				unstarted = builder.getMethod("unstarted", Runnable.class);
+			} catch (ReflectiveOperationException e) {
+
+				// Not supported by this runtime
+				virtual = null;
+			}
+		}
+		ofVirtual = virtual;
+		builderName = name;
+		builderUnstarted = unstarted;
+	}
+
+	private LibLogScheduler() {
+	}
+
+	/**
+	 * Run a task once, after a delay.
+	 * 
+	 * @param task  the task to run
+	 * @param delay delay before running
+	 * @param unit  unit of the delay
+	 * @return the scheduled task, cancel to stop it
+	 */
+	public static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+		return scheduler.schedule(task, delay, unit);
+	}
+
+	/**
+	 * Create a thread for a writer which needs its own, not started.
+	 * 
+	 * The thread is virtual if enabled and supported, otherwise a daemon.
+	 * 
+	 * @param name the thread name
+	 * @param task the thread body
+	 * @return the new thread
+	 */
+	public static Thread newThread(String name, Runnable task) {
+		if (ofVirtual != null) {
+			try {
+				Object builder = builderName.invoke(ofVirtual.invoke(null), name);
+				return (Thread) builderUnstarted.invoke(builder, task);
+			} catch (ReflectiveOperationException e) {
+				// Fall back to a platform thread
+			}
+		}
+
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/**
+	 * Returns true if writer threads are virtual.
+	 * 
+	 * @return threads are virtual
+	 */
+	public static boolean isVirtual() {
+		return ofVirtual != null;
+	}
+}
@@ -0,0 +1,280 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
+
+/**
+ * LibLog // LibLogSpillJournal
+ * 
+ * An on-disk queue of log messages, used when the in-memory cache of a writer
+ * is past its high-water mark.
+ * 
+ * Messages are appended sequentially to numbered segment files and read back
+ * in the same order. A segment is deleted once read; segments left by a
+ * previous run are read first. Messages are delivered at least once, a segment
+ * read partially when the process stopped is read again from the start.
+ */
+public class LibLogSpillJournal {
+
+	private static final String SUFFIX = ".journal";
+
+	private static final int MAX_STRING = (64 * 1024 * 1024);
+
+	private final File dir;
+
+	private final long segmentSize;
+
+	// Closed segments, oldest first
+	private final Deque<File> segments = new ArrayDeque<>();
+
+	private File writeSegment;
+	private DataOutputStream writer;
+	private long writeSize;
+	private long writeCount;
+
+	private File readSegment;
+	private DataInputStream reader;
+
+	private long sequence;
+
+	/**
+	 * Open a journal, picking up any segments already in the directory.
+	 * 
+	 * @param dir         the journal directory
+	 * @param segmentSize bytes per segment
+	 * @throws IOException failed creating the directory
+	 */
+	public LibLogSpillJournal(File dir, long segmentSize) throws IOException {
+
+		this.dir = dir;
+		this.segmentSize = segmentSize;
+
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Failed to create journal: " + dir);
+		}
+
+		// Queue existing segments in order
+		File[] existing = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+		Arrays.sort(existing);
+		for (File segment : existing) {
+			segments.add(segment);
+			sequence = Math.max(sequence, sequence(segment) + 1);
+		}
+	}
+
+	/**
+	 * Returns true if there are no messages to read.
+	 * 
+	 * @return journal is empty
+	 */
+	public synchronized boolean isEmpty() {
+		return (reader == null) && segments.isEmpty() && (writeCount == 0);
+	}
+
+	/**
+	 * Append a message to the journal.
+	 * 
+	 * @param message the message to append
+	 * @return false if the message could not be written
+	 */
+	public synchronized boolean append(LibLogMessage message) {
+		try {
+			if (writer == null || writeSize >= segmentSize) {
+				roll();
+			}
+
+			writeSize += write(writer, message);
+			writeCount++;
+			return true;
+
+		} catch (IOException e) {
+			e.printStackTrace(System.err);
+			return false;
+		}
+	}
+
+	/**
+	 * Read messages from the journal, oldest first.
+	 * 
+	 * @param messages the list to add messages to
+	 * @param max      the maximum number of messages to read
+	 * @return the number of messages read
+	 */
+	public synchronized int poll(List<LibLogMessage> messages, int max) {
+		int read = 0;
+		while (read < max) {
+			try {
+
+				// Open the next segment
+				if (reader == null && !nextSegment()) {
+					break;
+				}
+
+				messages.add(read(reader));
+				read++;
+
+			} catch (EOFException e) {
+
+				// Finished with this segment
+				closeReader(true);
+
+			} catch (IOException e) {
+
+				// Skip a damaged segment
+				e.printStackTrace(System.err);
+				closeReader(true);
+			}
+		}
+		return read;
+	}
+
+	/**
+	 * Close the journal, leaving unread segments for the next run.
+	 */
+	public synchronized void close() {
+		try {
+			closeWriter();
+		} catch (IOException e) {
+			e.printStackTrace(System.err);
+		}
+		closeReader(false);
+	}
+
+	private boolean nextSegment() throws IOException {
+
+		// Hand the segment being written to the reader
+		if (segments.isEmpty() && writeCount > 0) {
+			closeWriter();
+		}
+
+		if (segments.isEmpty()) {
+			return false;
+		}
+
+		readSegment = segments.poll();
+		reader = new DataInputStream(new BufferedInputStream(//
+				new FileInputStream(readSegment), 64 * 1024));
+		return true;
+	}
+
+	private void roll() throws IOException {
+		closeWriter();
+
+		writeSegment = new File(dir, String.format("%016d%s", sequence++, SUFFIX));
+		writer = new DataOutputStream(new BufferedOutputStream(//
+				new FileOutputStream(writeSegment), 64 * 1024));
+		writeSize = 0;
+		writeCount = 0;
+	}
+
+	private void closeWriter() throws IOException {
+		if (writer == null) {
+			return;
+		}
+
+		try {
+			writer.close();
+		} finally {
+			if (writeCount > 0) {
+				segments.add(writeSegment);
+			} else {
+				writeSegment.delete();
+			}
+			writer = null;
+			writeSegment = null;
+			writeCount = 0;
+		}
+	}
+
+	private void closeReader(boolean delete) {
+		if (reader == null) {
+			return;
+		}
+
+		try {
+			reader.close();
+		} catch (IOException e) {
+		}
+
+		if (delete) {
+			readSegment.delete();
+		} else {
+			segments.addFirst(readSegment);
+		}
+		reader = null;
+		readSegment = null;
+	}
+
+	private static long sequence(File segment) {
+		String name = segment.getName();
+		try {
+			return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static int write(DataOutputStream out, LibLogMessage message) throws IOException {
+		int start = out.size();
+		out.writeLong(message.getTime());
+		out.writeByte(message.getLoggedLevel().ordinal());
+		writeString(out, message.getLoggedFacility());
+		writeString(out, message.getLoggedMessage());
+		writeString(out, message.getLoggedClassName());
+		out.writeLong(message.getLoggedLineNumber());
+		return out.size() - start;
+	}
+
+	private static LibLogMessage read(DataInputStream in) throws IOException {
+		long time = in.readLong();
+		int ordinal = in.readByte();
+		if (ordinal < 0 || ordinal >= LogLevel.values().length) {
+			throw new IOException("Corrupt journal record.");
+		}
+
+		LogLevel level = LogLevel.values()[ordinal];
+		String facility = readString(in);
+		String message = readString(in);
+		String className = readString(in);
+		long classLine = in.readLong();
+		return new LibLogMessage(time, level, facility, message, className, classLine);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		} else if (length > MAX_STRING) {
+			throw new IOException("Corrupt journal record.");
+		}
+
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,315 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LibLog // LibLogStackRenderer
+ * 
+ * Renders the stack trace of a logged throwable.
+ * 
+ * The frames of a trace are rendered once and cached by the frames of the
+ * whole cause chain, so the same exception logged repeatedly only renders its
+ * messages. Frames in common with an enclosing trace are elided as by
+ * {@link Throwable#printStackTrace()}, frames of configured packages are
+ * collapsed, and each trace may be limited to a number of frames.
+ */
+public class LibLogStackRenderer {
+
+	private static final String BEGIN = " --- STACK BEGIN ---\n";
+
+	private static final String END = " --- STACK END ---";
+
+	/**
+	 * A throwable in the cause chain, as it is rendered.
+	 */
+	private static final class Segment {
+
+		private final String head;
+		private final String prefix;
+		private final Throwable tossed;
+		private final StackTraceElement[] trace;
+		private final int common;
+
+		Segment(String head, String prefix, Throwable tossed, StackTraceElement[] trace, int common) {
+			this.head = head;
+			this.prefix = prefix;
+			this.tossed = tossed;
+			this.trace = trace;
+			this.common = common;
+		}
+	}
+
+	/**
+	 * The shape and frames of a cause chain.
+	 */
+	private static final class Key {
+
+		private final String[] heads;
+		private final StackTraceElement[][] traces;
+		private final int hash;
+
+		Key(List<Segment> segments) {
+			this.heads = new String[segments.size()];
+			this.traces = new StackTraceElement[segments.size()][];
+
+			int h = 1;
+			for (int x = 0; x < heads.length; x++) {
+				Segment segment = segments.get(x);
+				heads[x] = segment.head;
+				traces[x] = segment.trace;
+				h = (31 * h) + segment.head.hashCode();
+				h = (31 * h) + Arrays.hashCode(segment.trace);
+			}
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) o;
+			if (hash != other.hash || !Arrays.equals(heads, other.heads)) {
+				return false;
+			}
+
+			for (int x = 0; x < traces.length; x++) {
+				if (!Arrays.equals(traces[x], other.traces[x])) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private final int maxFrames;
+
+	private final String[] elide;
+
+	private final int cacheSize;
+
+	private final Map<Key, String[]> cache = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Create a new stack renderer.
+	 * 
+	 * @param maxFrames frames rendered per throwable, or 0 for all
+	 * @param elide     class name prefixes of frames to collapse
+	 * @param cacheSize number of rendered traces cached, or 0
+	 */
+	public LibLogStackRenderer(int maxFrames, String[] elide, int cacheSize) {
+		if (maxFrames < 0 || cacheSize < 0) {
+			throw new IllegalArgumentException("Invalid stack limits: " + maxFrames + "/" + cacheSize);
+		}
+
+		this.maxFrames = maxFrames;
+		this.elide = elide.clone();
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Create a stack renderer from the environment.
+	 * 
+	 * LOG_STACK_FRAMES (frames per throwable), LOG_STACK_ELIDE (class name
+	 * prefixes, separated by ;), LOG_STACK_CACHE (traces cached)
+	 * 
+	 * @return the stack renderer
+	 */
+	public static LibLogStackRenderer fromEnv() {
+
+		String frames = System.getenv("LOG_STACK_FRAMES");
+		String elide = System.getenv("LOG_STACK_ELIDE");
+		String cache = System.getenv("LOG_STACK_CACHE");
+
+		List<String> prefixes = new ArrayList<>();
+		if (elide != null) {
+			for (String prefix : elide.split(";")) {
+				if (!prefix.trim().isEmpty()) {
+					prefixes.add(prefix.trim());
+				}
+			}
+		}
+
+		return new LibLogStackRenderer(//
+				(frames != null) ? Integer.parseInt(frames) : 0, //
+				prefixes.toArray(new String[0]), //
+				(cache != null) ? Integer.parseInt(cache) : 1024);
+	}
+
+	/**
+	 * Returns the number of traces rendered from the cache.
+	 * 
+	 * @return cache hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of traces rendered in full.
+	 * 
+	 * @return cache misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Render a throwable wrapped with header / footer.
+	 * 
+	 * @param tossed the throwable
+	 * @return throwable as a string
+	 */
+	public String render(Throwable tossed) {
+
+		// Walk the cause chain
+		List<Segment> segments = new ArrayList<>();
+		Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		walk(tossed, new StackTraceElement[0], "", "", seen, segments);
+
+		// Render the frames, or reuse them
+		String[] frames;
+		if (cacheSize > 0) {
+			Key key = new Key(segments);
+			frames = cache.get(key);
+			if (frames == null) {
+				misses.increment();
+				frames = frames(segments);
+
+				// Traces of generated code would grow without bound
+				if (cache.size() >= cacheSize) {
+					cache.clear();
+				}
+				cache.put(key, frames);
+			} else {
+				hits.increment();
+			}
+		} else {
+			misses.increment();
+			frames = frames(segments);
+		}
+
+		// Only the messages are rendered each time
+		StringBuilder out = new StringBuilder(256);
+		out.append(BEGIN).append(tossed.getClass().getName()).append('\n');
+		for (int x = 0; x < frames.length; x++) {
+			Segment segment = segments.get(x);
+			if (segment.trace == null) {
+				out.append(segment.head).append("[CIRCULAR REFERENCE: ")//
+						.append(segment.tossed).append("]\n");
+			} else {
+				out.append(segment.head).append(segment.tossed).append('\n');
+				out.append(frames[x]);
+			}
+		}
+		return out.append(END).toString();
+	}
+
+	private static void walk(Throwable tossed, StackTraceElement[] enclosing, //
+			String caption, String prefix, Set<Throwable> seen, List<Segment> segments) {
+
+		if (!seen.add(tossed)) {
+			segments.add(new Segment(prefix + caption, prefix, tossed, null, 0));
+			return;
+		}
+
+		// Count frames in common with the enclosing trace
+		StackTraceElement[] trace = tossed.getStackTrace();
+		int m = trace.length - 1;
+		int n = enclosing.length - 1;
+		while (m >= 0 && n >= 0 && trace[m].equals(enclosing[n])) {
+			m--;
+			n--;
+		}
+
+		segments.add(new Segment(prefix + caption, prefix, tossed, trace, trace.length - 1 - m));
+
+		for (Throwable suppressed : tossed.getSuppressed()) {
+			walk(suppressed, trace, "Suppressed: ", prefix + "\t", seen, segments);
+		}
+
+		Throwable cause = tossed.getCause();
+		if (cause != null) {
+			walk(cause, trace, "Caused by: ", prefix, seen, segments);
+		}
+	}
+
+	private String[] frames(List<Segment> segments) {
+		String[] frames = new String[segments.size()];
+		for (int x = 0; x < frames.length; x++) {
+			Segment segment = segments.get(x);
+			frames[x] = (segment.trace != null) ? frames(segment) : "";
+		}
+		return frames;
+	}
+
+	private String frames(Segment segment) {
+		StringBuilder out = new StringBuilder(64 * segment.trace.length);
+		String prefix = segment.prefix;
+		int unique = segment.trace.length - segment.common;
+
+		int shown = 0;
+		int elided = 0;
+		for (int x = 0; x < unique; x++) {
+
+			// Limit the frames per throwable
+			if (maxFrames > 0 && shown >= maxFrames) {
+				out.append(prefix).append("\t... ").append(elided + unique - x).append(" omitted\n");
+				elided = 0;
+				break;
+			}
+
+			// Collapse runs of elided frames, never the throwing frame
+			StackTraceElement frame = segment.trace[x];
+			if (x > 0 && elided(frame)) {
+				elided++;
+				continue;
+			}
+
+			if (elided > 0) {
+				out.append(prefix).append("\t... ").append(elided).append(" elided\n");
+				elided = 0;
+			}
+
+			out.append(prefix).append("\tat ").append(frame).append('\n');
+			shown++;
+		}
+
+		if (elided > 0) {
+			out.append(prefix).append("\t... ").append(elided).append(" elided\n");
+		}
+
+		if (segment.common > 0) {
+			out.append(prefix).append("\t... ").append(segment.common).append(" more\n");
+		}
+		return out.toString();
+	}
+
+	private boolean elided(StackTraceElement frame) {
+		String className = frame.getClassName();
+		for (String prefix : elide) {
+			if (className.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -1,5 +1,7 @@
 package com.mclarkdev.tools.liblog.lib;
 
+import java.util.List;
+
 /**
  * LibLog // LibLogStream
  */
@@ -12,4 +14,48 @@ public interface LibLogStream {
 	 * @return write successful
 	 */
 	public abstract boolean write(String message);
+
+	/**
+	 * Called with the metrics of the writer using the stream.
+	 * 
+	 * @param metrics the writer metrics
+	 */
+	public default void bind(LibLogWriterMetrics metrics) {
+	}
+
+	/**
+	 * Called once the writer using the stream has shut down, after the final
+	 * flush.
+	 */
+	public default void close() {
+	}
+
+	/**
+	 * Write a log message.
+	 * 
+	 * @param message the message to write
+	 * @param debug   include debugging information
+	 * @return write successful
+	 */
+	public default boolean write(LibLogMessage message, boolean debug) {
+		return write(message.buildLine(debug));
+	}
+
+	/**
+	 * Write a batch of log messages, in order.
+	 * 
+	 * @param messages the messages to write
+	 * @param debug    include debugging information
+	 * @return number of messages written
+	 */
+	public default int write(List<LibLogMessage> messages, boolean debug) {
+		int written = 0;
+		for (LibLogMessage message : messages) {
+			if (!write(message, debug)) {
+				break;
+			}
+			written++;
+		}
+		return written;
+	}
 }
@@ -1,24 +1,78 @@
 package com.mclarkdev.tools.liblog.lib;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.net.InetAddress;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
 
 import com.mclarkdev.tools.liblog.LibLog;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
 
 /**
  * LibLog // LibLogTCPStream
+ * 
+ * Sends newline terminated log lines over a SocketChannel, a batch per write.
+ * 
+ * Connections are made with a timeout, and retried with exponential backoff
+ * and jitter. Failures are logged when the connection goes down, not on every
+ * attempt. (?timeout=ms, ?backoff=ms, ?backoffMax=ms, ?nodelay=false,
+ * ?sndbuf=bytes)
+ * 
+ * With ?format=binary messages are sent as {@link LibLogBinaryEncoder} frames,
+ * the names dictionary starting over with each connection.
+ * 
+ * With ?compress=deflate the connection carries a zlib stream, each batch
+ * ended with a sync flush so the server can inflate it as it arrives. One
+ * compression context is kept per connection. (?compressLevel=1-9)
  */
 public class LibLogTCPStream implements LibLogStream {
 
-	protected Socket logSocket = null;
+	protected SocketChannel logChannel = null;
 
 	private final int logPort;
 	private final InetAddress logAddr;
 
+	private final int connectTimeout;
+	private final long backoffMin;
+	private final long backoffMax;
+	private final boolean noDelay;
+	private final int sendBuffer;
+
+	private final LibLogEncoder encoder = new LibLogEncoder(64 * 1024);
+	private final LibLogBinaryEncoder binary;
+
+	// Compression
+	private final Deflater deflater;
+	private final LibLogEncoder compressed;
+	private final byte[] chunk;
+
+	// Thread CPU clock for compression time, or null
+	private final ThreadMXBean threads;
+
+	private final LongAdder bytesIn = new LongAdder();
+	private final LongAdder bytesOut = new LongAdder();
+	private final LongAdder compressTime = new LongAdder();
+
+	private volatile LibLogWriterMetrics metrics = null;
+
+	// Reconnect state
+	private boolean closed = false;
+	private int failures = 0;
+	private long nextAttempt = System.nanoTime();
+
 	/**
 	 * Initialize a new TCP based log stream.
 	 * 
@@ -29,6 +83,38 @@ public class LibLogTCPStream implements LibLogStream {
 
 		this.logPort = addr.getPort();
 		this.logAddr = InetAddress.getByName(addr.getHost());
+
+		Map<String, String> params = LibLogWriter.parseQuery(addr.getQuery());
+		this.connectTimeout = Integer.parseInt(params.getOrDefault("timeout", "5000"));
+		this.backoffMin = Long.parseLong(params.getOrDefault("backoff", "250"));
+		this.backoffMax = Long.parseLong(params.getOrDefault("backoffMax", "30000"));
+		this.noDelay = !"false".equals(params.get("nodelay"));
+		this.sendBuffer = Integer.parseInt(params.getOrDefault("sndbuf", "0"));
+
+		String format = params.getOrDefault("format", "text");
+		if (!format.equals("text") && !format.equals("binary")) {
+			throw new IllegalArgumentException("Unknown wire format: " + format);
+		}
+		this.binary = format.equals("binary") ? new LibLogBinaryEncoder() : null;
+
+		String compress = params.getOrDefault("compress", "none");
+		if (!compress.equals("none") && !compress.equals("deflate")) {
+			throw new IllegalArgumentException("Unknown compression: " + compress);
+		}
+
+		if (compress.equals("deflate")) {
+			int level = Integer.parseInt(params.getOrDefault(//
+					"compressLevel", String.valueOf(Deflater.DEFAULT_COMPRESSION)));
+			this.deflater = new Deflater(level);
+			this.compressed = new LibLogEncoder(64 * 1024);
+			this.chunk = new byte[16 * 1024];
+			this.threads = threads();
+		} else {
+			this.deflater = null;
+			this.compressed = null;
+			this.chunk = null;
+			this.threads = null;
+		}
 	}
 
 	/**
@@ -37,33 +123,68 @@ public class LibLogTCPStream implements LibLogStream {
 	 * @return true if connected
 	 */
 	public boolean connected() {
-		return ((logSocket != null) && (logSocket.isConnected()));
+		return ((logChannel != null) && (logChannel.isConnected()));
 	}
 
 	/**
 	 * Connect to the remote logging server.
 	 * 
+	 * Returns immediately while waiting to retry a failed connection.
+	 * 
 	 * @param force Force a reconnect.
 	 * @return connect successful
 	 */
-	protected boolean connect(boolean force) {
+	protected synchronized boolean connect(boolean force) {
 		if (connected() && !force) {
 			return true;
 		}
+		if (closed) {
+			return false;
+		}
 
 		// Disconnect if connected
 		disconnect();
 
+		// Wait out the backoff
+		if (System.nanoTime() - nextAttempt < 0) {
+			return false;
+		}
+
+		SocketChannel channel = null;
 		try {
 
 			// Create new socket connection
-			logSocket = new Socket(logAddr, logPort);
+			channel = SocketChannel.open();
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, noDelay);
+			if (sendBuffer > 0) {
+				channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBuffer);
+			}
+			channel.socket().connect(new InetSocketAddress(logAddr, logPort), connectTimeout);
+			logChannel = channel;
+
+			// The server starts a new dictionary and zlib stream per connection
+			if (binary != null) {
+				binary.reset();
+			}
+			if (deflater != null) {
+				deflater.reset();
+			}
+
+			if (failures > 0) {
+				LibLog.logF("logger", "LibLogTCP: Reconnected after %d attempts (tcp://%s:%d)", //
+						failures, logAddr.getHostAddress(), logPort);
+			}
+			failures = 0;
 			return true;
 
 		} catch (IOException e) {
 
-			// Log the stream connection failure
-			LibLog.logF("logger", "LibLogTCP: Failed to connect (tcp://%s:%d)", logAddr.toString(), logPort);
+			if (metrics != null) {
+				metrics.error();
+			}
+
+			close(channel);
+			failed();
 			return false;
 		}
 	}
@@ -71,19 +192,34 @@ public class LibLogTCPStream implements LibLogStream {
 	/**
 	 * Disconnects the existing socket.
 	 */
-	public void disconnect() {
-		if (logSocket == null) {
+	public synchronized void disconnect() {
+		if (logChannel == null) {
 			return;
 		}
 
-		try {
-			logSocket.close();
-		} catch (IOException e) {
-		} finally {
-			logSocket = null;
+		close(logChannel);
+		logChannel = null;
+	}
+
+	/**
+	 * Disconnects and releases the compressor, the stream can not be used again.
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		disconnect();
+
+		// Native zlib memory is only freed by end()
+		if (deflater != null) {
+			deflater.end();
 		}
 	}
 
+	@Override
+	public void bind(LibLogWriterMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 	/**
 	 * Write a message to the log server.
 	 * 
@@ -91,33 +227,191 @@ public class LibLogTCPStream implements LibLogStream {
 	 * @return write successful
 	 */
 	@Override
-	public boolean write(String message) {
+	public synchronized boolean write(String message) {
 		if (!connected() && !connect(false)) {
 			return false;
 		}
 
-		try {
+		// Encode the log message
+		encoder.clear();
+		if (binary != null) {
+			binary.append(encoder, new LibLogMessage(LibLogTimestamp.now(), //
+					LogLevel.INFO, null, message, null, -1), false);
+		} else {
+			encoder.append(message).append((byte) '\n');
+		}
+		return send();
+	}
 
-			// Get the output stream
-			OutputStream out = //
-					logSocket.getOutputStream();
+	/**
+	 * Write a single message to the log server.
+	 * 
+	 * @param message the message to write
+	 * @param debug   include debugging information
+	 * @return write successful
+	 */
+	@Override
+	public boolean write(LibLogMessage message, boolean debug) {
+		if (binary == null) {
+			return write(message.buildLine(debug));
+		}
+		return write(Collections.singletonList(message), debug) == 1;
+	}
 
-			// Only one writer at a time
-			synchronized (out) {
+	/**
+	 * Write a batch of messages to the log server in a single send.
+	 * 
+	 * @param messages the messages to write
+	 * @param debug    include debugging information
+	 * @return number of messages written
+	 */
+	@Override
+	public synchronized int write(List<LibLogMessage> messages, boolean debug) {
+		if (!connected() && !connect(false)) {
+			return 0;
+		}
 
-				// Send the log message
-				out.write(message.getBytes());
-				out.write('\n');
-				out.flush();
+		// Encode the batch
+		encoder.clear();
+		for (LibLogMessage message : messages) {
+			if (binary != null) {
+				binary.append(encoder, message, debug);
+			} else {
+				encoder.appendLine(message, debug).append((byte) '\n');
+			}
+		}
+		return send() ? messages.size() : 0;
+	}
+
+	private boolean send() {
+		try {
+
+			// Send the encoded bytes
+			ByteBuffer bytes = (deflater != null) ? deflate() : encoder.flip();
+			int length = bytes.remaining();
+			while (bytes.hasRemaining()) {
+				logChannel.write(bytes);
+			}
+
+			if (metrics != null) {
+				metrics.bytes(length);
 			}
 			return true;
 
 		} catch (IOException e) {
 
-			LibLog.log("logger", "LibLogTCP: Failed to write message.", e);
-			LibLog.log("logger", message);
+			if (metrics != null) {
+				metrics.error();
+			}
+
 			disconnect();
+			failed();
 			return false;
 		}
 	}
+
+	private ByteBuffer deflate() {
+		long started = cpuTime();
+
+		// Compress the batch, flushed to a byte boundary
+		deflater.setInput(encoder.array(), 0, encoder.size());
+		compressed.clear();
+		int length;
+		do {
+			length = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+			compressed.append(chunk, 0, length);
+		} while (length == chunk.length);
+
+		bytesIn.add(encoder.size());
+		bytesOut.add(compressed.size());
+		compressTime.add(cpuTime() - started);
+		return compressed.flip();
+	}
+
+	private long cpuTime() {
+		return (threads != null) ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+
+	/**
+	 * Returns the number of bytes passed to the compressor.
+	 * 
+	 * @return uncompressed bytes
+	 */
+	public long getUncompressedBytes() {
+		return bytesIn.sum();
+	}
+
+	/**
+	 * Returns the number of bytes produced by the compressor.
+	 * 
+	 * @return compressed bytes
+	 */
+	public long getCompressedBytes() {
+		return bytesOut.sum();
+	}
+
+	/**
+	 * Returns the uncompressed size over the compressed size.
+	 * 
+	 * @return the compression ratio, or 0 if nothing was compressed
+	 */
+	public double getCompressionRatio() {
+		long out = bytesOut.sum();
+		return (out == 0) ? 0 : ((double) bytesIn.sum() / out);
+	}
+
+	/**
+	 * Returns the CPU time spent compressing, or wall time where thread CPU time
+	 * is not available.
+	 * 
+	 * @return compression time in nanoseconds
+	 */
+	public long getCompressionTime() {
+		return compressTime.sum();
+	}
+
+	private void failed() {
+
+		// Log once when the connection goes down
+		if (failures++ == 0) {
+			LibLog.logF("logger", "LibLogTCP: Connection down, retrying (tcp://%s:%d)", //
+					logAddr.getHostAddress(), logPort);
+		}
+
+		// Exponential backoff with jitter
+		long delay = backoffMin << Math.min(failures - 1, 20);
+		delay = Math.min(Math.max(delay, backoffMin), backoffMax);
+		delay = (delay / 2) + ThreadLocalRandom.current().nextLong((delay / 2) + 1);
+		nextAttempt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+	}
+
+	private static ThreadMXBean threads() {
+		try {
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			if (!threads.isCurrentThreadCpuTimeSupported()) {
+				return null;
+			}
+
+			// Measurement is JVM wide, only enabled when compressing
+			if (!threads.isThreadCpuTimeEnabled()) {
+				threads.setThreadCpuTimeEnabled(true);
+			}
+			return threads;
+		} catch (RuntimeException e) {
+
+			// Not permitted, fall back to wall time
+			return null;
+		}
+	}
+
+	private static void close(SocketChannel channel) {
+		if (channel == null) {
+			return;
+		}
+
+		try {
+			channel.close();
+		} catch (IOException e) {
+		}
+	}
 }
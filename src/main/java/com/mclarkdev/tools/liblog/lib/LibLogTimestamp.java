@@ -0,0 +1,130 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.time.LocalDate;
+import java.util.TimeZone;
+
+/**
+ * LibLog // LibLogTimestamp
+ * 
+ * Renders message time-stamps (yyyyMMdd HH:mm:ss) in the default time zone.
+ * 
+ * The rendered second is cached and shared by all threads; a new stamp is only
+ * built when the second changes, reusing the date portion until the day rolls.
+ */
+public final class LibLogTimestamp {
+
+	private static final long _1S = 1000;
+	private static final long _1D = _1S * 60 * 60 * 24;
+
+	private static final TimeZone zone = TimeZone.getDefault();
+
+	private static volatile LibLogClock clock = LibLogClock.SYSTEM;
+
+	private static volatile Stamp cached = new Stamp(Long.MIN_VALUE, Long.MIN_VALUE, null, null);
+
+	private LibLogTimestamp() {
+	}
+
+	/**
+	 * Returns the current time from the configured clock.
+	 * 
+	 * @return milliseconds since the epoch
+	 */
+	public static long now() {
+		return clock.millis();
+	}
+
+	/**
+	 * Replace the clock used to stamp messages.
+	 * 
+	 * @param source the new clock, or null for the system clock
+	 */
+	public static void setClock(LibLogClock source) {
+		clock = (source != null) ? source : LibLogClock.SYSTEM;
+	}
+
+	/**
+	 * Returns the formatted time-stamp for the given time.
+	 * 
+	 * @param millis milliseconds since the epoch
+	 * @return the formatted time-stamp
+	 */
+	public static String format(long millis) {
+		long second = Math.floorDiv(millis, _1S);
+
+		// Same second as last rendered
+		Stamp stamp = cached;
+		if (stamp.second == second) {
+			return stamp.text;
+		}
+
+		// Render and publish the new second
+		Stamp next = render(second, stamp);
+		if (second > stamp.second) {
+			cached = next;
+		}
+		return next.text;
+	}
+
+	private static Stamp render(long second, Stamp previous) {
+
+		long local = (second * _1S) + zone.getOffset(second * _1S);
+		long day = Math.floorDiv(local, _1D);
+		int secs = (int) (Math.floorMod(local, _1D) / _1S);
+
+		// Reuse the date if the day has not changed
+		char[] date = (previous.day == day) ? previous.date : renderDate(day);
+
+		char[] text = new char[date.length + 8];
+		System.arraycopy(date, 0, text, 0, date.length);
+
+		int pos = date.length;
+		pos = digits(text, pos, secs / 3600, 2);
+		text[pos++] = ':';
+		pos = digits(text, pos, (secs / 60) % 60, 2);
+		text[pos++] = ':';
+		digits(text, pos, secs % 60, 2);
+
+		return new Stamp(second, day, date, new String(text));
+	}
+
+	private static char[] renderDate(long day) {
+
+		LocalDate date = LocalDate.ofEpochDay(day);
+		String year = Integer.toString(date.getYear());
+		int yearLen = Math.max(4, year.length());
+
+		char[] text = new char[yearLen + 5];
+		int pos = digits(text, 0, date.getYear(), yearLen);
+		pos = digits(text, pos, date.getMonthValue(), 2);
+		pos = digits(text, pos, date.getDayOfMonth(), 2);
+		text[pos] = ' ';
+		return text;
+	}
+
+	private static int digits(char[] out, int pos, int value, int width) {
+		for (int x = (pos + width - 1); x >= pos; x--) {
+			out[x] = (char) ('0' + (value % 10));
+			value /= 10;
+		}
+		return pos + width;
+	}
+
+	/**
+	 * An immutable rendered second.
+	 */
+	private static final class Stamp {
+
+		private final long second;
+		private final long day;
+		private final char[] date;
+		private final String text;
+
+		private Stamp(long second, long day, char[] date, String text) {
+			this.second = second;
+			this.day = day;
+			this.date = date;
+			this.text = text;
+		}
+	}
+}
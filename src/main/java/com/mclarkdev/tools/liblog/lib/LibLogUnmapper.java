@@ -0,0 +1,36 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+
+/**
+ * LibLog // LibLogUnmapper
+ * 
+ * Releases a file mapping without waiting for the buffer to be collected.
+ * 
+ * The buffer must not be used again once unmapped.
+ */
+final class LibLogUnmapper {
+
+	private LibLogUnmapper() {
+	}
+
+	/**
+	 * Unmap a buffer, leaving it to the collector if not supported.
+	 * 
+	 * @param buffer the mapped buffer
+	 */
+	static void unmap(MappedByteBuffer buffer) {
+		try {
+			Method cleaner = buffer.getClass().getMethod("cleaner");
+			cleaner.setAccessible(true);
+
+			Object clean = cleaner.invoke(buffer);
+			if (clean != null) {
+				clean.getClass().getMethod("clean").invoke(clean);
+			}
+		} catch (Exception e) {
+			// Unmapped when collected
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LibLog // LibLogWaitStrategy
+ * 
+ * How a thread waits for a queue to change state.
+ */
+public enum LibLogWaitStrategy {
+
+	/**
+	 * Busy spin, lowest latency at the cost of a full core.
+	 */
+	SPIN,
+
+	/**
+	 * Spin briefly, then yield the processor.
+	 */
+	YIELD,
+
+	/**
+	 * Spin and yield briefly, then park for increasing intervals.
+	 */
+	PARK;
+
+	private static final int SPINS = 100;
+	private static final int YIELDS = 200;
+
+	private static final long PARK_MIN = 10_000;
+	private static final long PARK_MAX = 1_000_000;
+
+	/**
+	 * Wait once.
+	 * 
+	 * @param attempt number of consecutive waits
+	 */
+	public void idle(int attempt) {
+		switch (this) {
+		case SPIN:
+			return;
+
+		case YIELD:
+			if (attempt > SPINS) {
+				Thread.yield();
+			}
+			return;
+
+		case PARK:
+			if (attempt > (SPINS + YIELDS)) {
+				int backoff = Math.min(attempt - (SPINS + YIELDS), 10);
+				LockSupport.parkNanos(Math.min(PARK_MIN << backoff, PARK_MAX));
+			} else if (attempt > SPINS) {
+				Thread.yield();
+			}
+			return;
+		}
+	}
+
+	/**
+	 * Parse a wait strategy by name, ignoring case.
+	 * 
+	 * @param name the strategy name
+	 * @return the wait strategy
+	 */
+	public static LibLogWaitStrategy parse(String name) {
+		return valueOf(name.trim().toUpperCase(Locale.ROOT));
+	}
+}
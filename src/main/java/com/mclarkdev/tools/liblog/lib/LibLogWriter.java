@@ -1,8 +1,12 @@
 package com.mclarkdev.tools.liblog.lib;
 
 import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.mclarkdev.tools.liblog.LibLog;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
 
 /**
  * LibLog // LibLogWriter
@@ -22,19 +26,135 @@ public abstract class LibLogWriter {
 
 	protected final String scheme;
 
+	protected final Map<String, String> params;
+
 	protected final boolean debug;
 
+	protected final LogLevel level;
+
+	protected final LibLogWriterMetrics metrics;
+
 	public LibLogWriter(URI uri) {
 
 		this.uri = uri;
 
 		this.scheme = uri.getScheme();
 
-		String query = uri.getQuery();
-		this.debug = ((query != null) && query.equals("debug"));
+		this.params = parseQuery(uri.getQuery());
+
+		this.debug = flag("debug");
+
+		String minLevel = param("level", null);
+		this.level = (minLevel != null) ? LogLevel.parse(minLevel) : LogLevel.DEBUG;
+
+		this.metrics = new LibLogWriterMetrics(uri.toString(), this::getQueueDepth);
 		LibLog.logF("logger", "Created LogWriter: %s", uri);
 	}
 
+	/**
+	 * Returns true if the writer includes debugging information.
+	 * 
+	 * @return writer is in debug mode
+	 */
+	public boolean isDebug() {
+		return debug;
+	}
+
+	/**
+	 * Returns the minimum level written by this writer.
+	 * 
+	 * @return the minimum log level
+	 */
+	public LogLevel getLevel() {
+		return level;
+	}
+
+	/**
+	 * Returns the counters and write latencies of this writer.
+	 * 
+	 * @return the writer metrics
+	 */
+	public LibLogWriterMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the number of messages queued by the writer, not yet written.
+	 * 
+	 * @return queued messages
+	 */
+	public long getQueueDepth() {
+		return 0;
+	}
+
+	/**
+	 * Returns true if the writer accepts messages of the given level.
+	 * 
+	 * @param messageLevel the message level
+	 * @return level is written
+	 */
+	public boolean accepts(LogLevel messageLevel) {
+		return messageLevel.atLeast(level);
+	}
+
+	/**
+	 * Returns a URI query parameter.
+	 * 
+	 * @param key          the parameter name
+	 * @param defaultValue value if not set
+	 * @return the parameter value
+	 */
+	protected String param(String key, String defaultValue) {
+		String value = params.get(key);
+		return (value != null) ? value : defaultValue;
+	}
+
+	/**
+	 * Returns a numeric URI query parameter.
+	 * 
+	 * @param key          the parameter name
+	 * @param defaultValue value if not set
+	 * @return the parameter value
+	 */
+	protected long param(String key, long defaultValue) {
+		String value = params.get(key);
+		return (value != null) ? Long.parseLong(value) : defaultValue;
+	}
+
+	/**
+	 * Returns true if a flag is set in the URI query. (?flag or ?flag=true)
+	 * 
+	 * @param key the parameter name
+	 * @return flag is set
+	 */
+	protected boolean flag(String key) {
+		String value = params.get(key);
+		return (value != null) && (value.isEmpty() || Boolean.parseBoolean(value));
+	}
+
+	/**
+	 * Parse the parameters of a URI query.
+	 * 
+	 * @param query the raw query, or null
+	 * @return the parameters, flags map to an empty string
+	 */
+	public static Map<String, String> parseQuery(String query) {
+		if (query == null || query.isEmpty()) {
+			return Collections.emptyMap();
+		}
+
+		Map<String, String> params = new HashMap<>();
+		for (String param : query.split("&")) {
+			int split = param.indexOf('=');
+			if (split < 0) {
+				params.put(param, "");
+			} else {
+				params.put(param.substring(0, split), param.substring(split + 1));
+			}
+		}
+		return Collections.unmodifiableMap(params);
+	}
+
 	/**
 	 * Called when the logger is created.
 	 * 
@@ -0,0 +1,192 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * LibLog // LibLogWriterMetrics
+ * 
+ * Counters and a write latency histogram for a single log writer.
+ * 
+ * Counters are striped so writers on many threads do not contend. Latencies
+ * are counted in power of two buckets of nanoseconds, for a sample of one in
+ * SAMPLE_RATE writes so the clock is rarely read.
+ */
+public class LibLogWriterMetrics implements LibLogWriterMetricsMXBean {
+
+	/**
+	 * Number of latency buckets, bucket N holds latencies below 2^N ns.
+	 */
+	public static final int BUCKETS = 64;
+
+	/**
+	 * One in this many writes is timed, a power of two.
+	 */
+	public static final int SAMPLE_RATE = 16;
+
+	private final String name;
+
+	private volatile LongSupplier queueDepth;
+
+	private final LongAdder messages = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder drops = new LongAdder();
+
+	private final LongAdder latencyTotal = new LongAdder();
+	private final LongAccumulator latencyMax = new LongAccumulator(Math::max, 0);
+	private final LongAdder[] latencies = new LongAdder[BUCKETS];
+
+	/**
+	 * Create the metrics of a writer.
+	 * 
+	 * @param name       the writer name
+	 * @param queueDepth reads the writer queue depth
+	 */
+	public LibLogWriterMetrics(String name, LongSupplier queueDepth) {
+		this.name = name;
+		this.queueDepth = queueDepth;
+
+		for (int x = 0; x < BUCKETS; x++) {
+			latencies[x] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Read the queue depth from another source, when the writer is wrapped.
+	 * 
+	 * @param queueDepth reads the writer queue depth
+	 */
+	void queue(LongSupplier queueDepth) {
+		this.queueDepth = queueDepth;
+	}
+
+	/**
+	 * Returns true if the next write should be timed.
+	 * 
+	 * @return time the write
+	 */
+	public boolean sample() {
+		return (ThreadLocalRandom.current().nextInt() & (SAMPLE_RATE - 1)) == 0;
+	}
+
+	/**
+	 * Count a message written.
+	 */
+	public void written() {
+		messages.increment();
+	}
+
+	/**
+	 * Count a message written, and its sampled latency.
+	 * 
+	 * @param nanos time taken to write
+	 */
+	public void written(long nanos) {
+		messages.increment();
+
+		nanos = Math.max(0, nanos);
+		latencies[Math.min(BUCKETS - 1, BUCKETS - Long.numberOfLeadingZeros(nanos))].increment();
+		latencyTotal.add(nanos);
+		latencyMax.accumulate(nanos);
+	}
+
+	/**
+	 * Count bytes written to the destination.
+	 * 
+	 * @param count number of bytes
+	 */
+	public void bytes(long count) {
+		bytes.add(count);
+	}
+
+	/**
+	 * Count a failed write.
+	 */
+	public void error() {
+		errors.increment();
+	}
+
+	/**
+	 * Count a dropped message.
+	 */
+	public void dropped() {
+		drops.increment();
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getMessages() {
+		return messages.sum();
+	}
+
+	@Override
+	public long getBytes() {
+		return bytes.sum();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	@Override
+	public long getDrops() {
+		return drops.sum();
+	}
+
+	@Override
+	public long getQueueDepth() {
+		return queueDepth.getAsLong();
+	}
+
+	@Override
+	public long getLatencyMean() {
+		return snapshot().getLatencyMean();
+	}
+
+	@Override
+	public long getLatencyMax() {
+		return latencyMax.get();
+	}
+
+	@Override
+	public long getLatencyP50() {
+		return snapshot().getLatency(0.50);
+	}
+
+	@Override
+	public long getLatencyP99() {
+		return snapshot().getLatency(0.99);
+	}
+
+	@Override
+	public long getLatencyP999() {
+		return snapshot().getLatency(0.999);
+	}
+
+	/**
+	 * Returns a copy of the current values.
+	 * 
+	 * Counters are read one at a time while writers continue, the copy is not
+	 * an atomic view.
+	 * 
+	 * @return the current values
+	 */
+	public LibLogWriterSnapshot snapshot() {
+		long[] counts = new long[BUCKETS];
+		for (int x = 0; x < BUCKETS; x++) {
+			counts[x] = latencies[x].sum();
+		}
+
+		return new LibLogWriterSnapshot(name, //
+				messages.sum(), bytes.sum(), errors.sum(), drops.sum(), queueDepth.getAsLong(), //
+				latencyTotal.sum(), latencyMax.get(), counts);
+	}
+}
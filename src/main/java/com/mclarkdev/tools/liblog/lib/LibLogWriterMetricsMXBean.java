@@ -0,0 +1,34 @@
+package com.mclarkdev.tools.liblog.lib;
+
+/**
+ * LibLog // LibLogWriterMetricsMXBean
+ * 
+ * The metrics of a log writer, as published over JMX.
+ * 
+ * Latencies are sampled, in nanoseconds. Percentiles are the upper bound of
+ * their histogram bucket.
+ */
+public interface LibLogWriterMetricsMXBean {
+
+	public String getName();
+
+	public long getMessages();
+
+	public long getBytes();
+
+	public long getErrors();
+
+	public long getDrops();
+
+	public long getQueueDepth();
+
+	public long getLatencyMean();
+
+	public long getLatencyMax();
+
+	public long getLatencyP50();
+
+	public long getLatencyP99();
+
+	public long getLatencyP999();
+}
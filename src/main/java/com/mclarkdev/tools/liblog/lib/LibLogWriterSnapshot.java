@@ -0,0 +1,154 @@
+package com.mclarkdev.tools.liblog.lib;
+
+/**
+ * LibLog // LibLogWriterSnapshot
+ * 
+ * The metrics of a log writer at a point in time.
+ */
+public final class LibLogWriterSnapshot {
+
+	private final String name;
+
+	private final long messages;
+	private final long bytes;
+	private final long errors;
+	private final long drops;
+	private final long queueDepth;
+
+	private final long latencyTotal;
+	private final long latencyMax;
+	private final long[] latencies;
+
+	LibLogWriterSnapshot(String name, long messages, long bytes, long errors, long drops, //
+			long queueDepth, long latencyTotal, long latencyMax, long[] latencies) {
+		this.name = name;
+		this.messages = messages;
+		this.bytes = bytes;
+		this.errors = errors;
+		this.drops = drops;
+		this.queueDepth = queueDepth;
+		this.latencyTotal = latencyTotal;
+		this.latencyMax = latencyMax;
+		this.latencies = latencies;
+	}
+
+	/**
+	 * Returns the writer name, its URI.
+	 * 
+	 * @return the writer name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the number of messages written.
+	 * 
+	 * @return messages written
+	 */
+	public long getMessages() {
+		return messages;
+	}
+
+	/**
+	 * Returns the number of bytes written to the destination.
+	 * 
+	 * @return bytes written
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of failed writes.
+	 * 
+	 * @return write errors
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Returns the number of messages dropped.
+	 * 
+	 * @return messages dropped
+	 */
+	public long getDrops() {
+		return drops;
+	}
+
+	/**
+	 * Returns the number of messages queued by the writer.
+	 * 
+	 * @return queued messages
+	 */
+	public long getQueueDepth() {
+		return queueDepth;
+	}
+
+	/**
+	 * Returns the mean write latency.
+	 * 
+	 * @return mean latency in nanoseconds
+	 */
+	public long getLatencyMean() {
+		long count = 0;
+		for (long bucket : latencies) {
+			count += bucket;
+		}
+		return (count == 0) ? 0 : (latencyTotal / count);
+	}
+
+	/**
+	 * Returns the highest sampled write latency.
+	 * 
+	 * @return max latency in nanoseconds
+	 */
+	public long getLatencyMax() {
+		return latencyMax;
+	}
+
+	/**
+	 * Returns a write latency percentile, as the upper bound of its bucket.
+	 * 
+	 * @param quantile the percentile, from 0 to 1
+	 * @return latency in nanoseconds, or 0 if nothing was written
+	 */
+	public long getLatency(double quantile) {
+		long count = 0;
+		for (long bucket : latencies) {
+			count += bucket;
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(quantile * count);
+		long seen = 0;
+		for (int x = 0; x < latencies.length; x++) {
+			seen += latencies[x];
+			if (seen >= rank && seen > 0) {
+				return Math.min((1L << x) - 1, latencyMax);
+			}
+		}
+		return latencyMax;
+	}
+
+	/**
+	 * Returns the sampled latency histogram, bucket N counts latencies below 2^N
+	 * ns.
+	 * 
+	 * @return count per bucket
+	 */
+	public long[] getLatencies() {
+		return latencies.clone();
+	}
+
+	@Override
+	public String toString() {
+		return String.format(//
+				"%s: messages=%d, bytes=%d, errors=%d, drops=%d, queued=%d, p50=%dns, p99=%dns, max=%dns", //
+				name, messages, bytes, errors, drops, queueDepth, //
+				getLatency(0.50), getLatency(0.99), latencyMax);
+	}
+}
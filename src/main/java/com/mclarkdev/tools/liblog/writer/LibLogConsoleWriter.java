@@ -3,6 +3,7 @@ package com.mclarkdev.tools.liblog.writer;
 import java.io.PrintStream;
 import java.net.URI;
 
+import com.mclarkdev.tools.liblog.lib.LibLogEncoder;
 import com.mclarkdev.tools.liblog.lib.LibLogMessage;
 import com.mclarkdev.tools.liblog.lib.LibLogWriter;
 
@@ -35,12 +36,22 @@ public class LibLogConsoleWriter extends LibLogWriter {
 	@Override
 	public void write(LibLogMessage message) {
 
-		String logLine = (debug) ? //
-				message.buildDebugLine() : message.buildLogLine();
+		// Render first, formatting may log
+		message.getLoggedMessage();
+
+		// Encode the log line
+		LibLogEncoder line = LibLogEncoder.local()//
+				.appendLine(message, debug)//
+				.append(LibLogEncoder.LINE_SEPARATOR);
 
 		// Write to stream
-		synchronized (out) {
-			out.println(logLine);
+		try {
+			synchronized (out) {
+				out.write(line.array(), 0, line.size());
+			}
+			metrics.bytes(line.size());
+		} finally {
+			line.release();
 		}
 	}
 
@@ -1,26 +1,42 @@
 package com.mclarkdev.tools.liblog.writer;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.URI;
-import java.time.Duration;
-import java.time.LocalDateTime;
-import java.util.Calendar;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.mclarkdev.tools.liblog.LibLog;
+import com.mclarkdev.tools.liblog.lib.LibLogEncoder;
+import com.mclarkdev.tools.liblog.lib.LibLogFileChannel;
+import com.mclarkdev.tools.liblog.lib.LibLogFsyncPolicy;
+import com.mclarkdev.tools.liblog.lib.LibLogHandleCache;
 import com.mclarkdev.tools.liblog.lib.LibLogMessage;
+import com.mclarkdev.tools.liblog.lib.LibLogRotationPolicy;
+import com.mclarkdev.tools.liblog.lib.LibLogScheduler;
+import com.mclarkdev.tools.liblog.lib.LibLogTimestamp;
 import com.mclarkdev.tools.liblog.lib.LibLogWriter;
 
 /**
  * LibLog // LibLogFileWriter
  * 
  * Writes messages to a series of log files.
+ * 
+ * Lines are collected per file and written in group commits, when the buffer
+ * fills or a flush interval after the first buffered line. Flushes run on a
+ * thread of the writer, started while there are lines to flush. (?buffer=bytes,
+ * ?flush=ms, ?fsync=none|interval|every-N)
+ * 
+ * Files rotate daily at midnight, or on a shorter interval and a maximum size,
+ * and rotated files may be compressed. An idle file rotates with its next
+ * line. (?rotate=6h, ?maxSize=512m, ?compress=gzip)
+ * 
+ * At most maxOpen files are held open, the least recently used are closed and
+ * reopened on the next write. (?maxOpen=256)
  */
 public class LibLogFileWriter extends LibLogWriter {
 
@@ -34,13 +50,35 @@ public class LibLogFileWriter extends LibLogWriter {
 	public static final long _1D = (_1H * 24);
 
 	public static String getTime() {
-		return LibLogMessage._DFORMAT.format(Calendar.getInstance().getTime());
+		return LibLogTimestamp.format(LibLogTimestamp.now());
 	}
 
 	private final File logDir;
 	private final String logPath;
 
-	private final ConcurrentHashMap<String, PrintWriter> logFiles;
+	private final int bufferSize;
+
+	private final long flushInterval;
+
+	private final LibLogFsyncPolicy fsync;
+
+	private final LibLogRotationPolicy rotation;
+
+	private final LibLogHandleCache<LibLogFileChannel> logFiles;
+
+	private final Thread shutdownHook = new Thread() {
+		public void run() {
+			flushOnExit();
+		}
+	};
+
+	// Runs flushes, syncs and rotation, off the shared scheduler
+	private final ThreadPoolExecutor flusher;
+
+	// A flush is scheduled for lines buffered since the last
+	private final AtomicBoolean flushPending = new AtomicBoolean();
+
+	private volatile ScheduledFuture<?> flushTask;
 
 	public LibLogFileWriter(URI uri) {
 		super(uri);
@@ -51,24 +89,37 @@ public class LibLogFileWriter extends LibLogWriter {
 
 		this.logDir = (new File(logPath));
 
-		this.logFiles = new ConcurrentHashMap<>();
+		this.bufferSize = (int) param("buffer", 64 * 1024);
+
+		this.flushInterval = param("flush", 200);
+
+		this.fsync = LibLogFsyncPolicy.parse(param("fsync", "none"));
+
+		this.rotation = LibLogRotationPolicy.parse(//
+				param("rotate", null), param("maxSize", null), param("compress", null));
+
+		this.logFiles = new LibLogHandleCache<>(//
+				(int) param("maxOpen", 256), this::newLog);
+
+		this.flusher = new ThreadPoolExecutor(//
+				1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), //
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						return LibLogScheduler.newThread(//
+								String.format("LibLogFileWriter:Flush (%s)", uri.toString()), r);
+					}
+				});
+		this.flusher.allowCoreThreadTimeOut(true);
 	}
 
 	@Override
 	public void setup() {
 
-		// TODO move this / make static
-		Timer logTimer = new Timer();
-
 		logDir.mkdirs();
 
-		long rotate = timeUntilRotate();
-		logTimer.scheduleAtFixedRate(new TimerTask() {
-			public void run() {
-				rotateLogs();
-			}
-		}, rotate, _1D);
-		LibLog.logF("logger", "First log rotate in %dms.", rotate);
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+		LibLog.logF("logger", "Log rotation: %s", rotation);
 	}
 
 	public final File getLogDir() {
@@ -76,91 +127,162 @@ public class LibLogFileWriter extends LibLogWriter {
 		return logDir;
 	}
 
+	/**
+	 * Returns the cache of open log files.
+	 * 
+	 * @return the open log files
+	 */
+	public final LibLogHandleCache<LibLogFileChannel> getLogFiles() {
+
+		return logFiles;
+	}
+
 	public void closeLog(String facility) {
 
-		PrintWriter log = logFiles.get(facility);
-		synchronized (log) {
-			logFiles.remove(facility);
-			log.close();
-		}
+		logFiles.remove(facility);
 	}
 
 	public void closeLogs() {
-		for (Map.Entry<String, PrintWriter> entry : logFiles.entrySet()) {
-			closeLog(entry.getKey());
+
+		logFiles.closeAll();
+	}
+
+	/**
+	 * Write all buffered lines to disk, rotating files which are due.
+	 */
+	public void flushLogs() {
+		for (LibLogFileChannel log : logFiles.handles()) {
+			try {
+				log.flush();
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+			}
 		}
 	}
 
-	private void rotateLogs() {
-		for (Map.Entry<String, PrintWriter> entry : logFiles.entrySet()) {
-			newLog(entry.getKey());
+	private void flushLater() {
+
+		// Flush once the interval passes, only while lines are waiting
+		if (!flushPending.get() && flushPending.compareAndSet(false, true)) {
+			flushTask = LibLogScheduler.schedule(() -> {
+				if (!flusher.isShutdown()) {
+					flusher.execute(this::flushPending);
+				}
+			}, flushInterval, TimeUnit.MILLISECONDS);
 		}
 	}
 
-	private PrintWriter newLog(String facility) {
+	private void flushPending() {
 
-		// Determine the name of the log file
-		File logFile = new File(logDir, //
-				String.format("%s-%s.log", //
-						getTime().substring(0, 8), facility));
+		// Lines written from here on schedule another flush
+		flushPending.set(false);
+		flushLogs();
+	}
+
+	private void flushOnExit() {
+
+		// Write anything still queued for the writers
+		LibLog.cfg().disableAsync();
+
+		flushLogs();
+	}
+
+	/**
+	 * Rotate all open log files.
+	 */
+	public void rotateLogs() {
+		for (LibLogFileChannel log : logFiles.handles()) {
+			try {
+				log.rotate();
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+			}
+		}
+	}
 
-		PrintWriter stream = null;
+	private LibLogFileChannel newLog(String facility) {
 
 		try {
 
-			// Create the new log stream
-			stream = (new PrintWriter(//
-					new FileWriter(logFile, true), true));
+			// Open the log stream, appending to an existing file
+			return new LibLogFileChannel(logDir, facility, bufferSize, fsync, rotation);
 		} catch (IOException e) {
 
 			// Log the stream creation failure
 			throw LibLog.log("logger", //
 					"Failed to create log stream.", e).asException();
 		}
+	}
 
-		// Update the log stream
-		PrintWriter existing = //
-				logFiles.put(facility, stream);
+	@Override
+	public void write(LibLogMessage message) {
 
-		// Close the previous stream
-		if (existing != null) {
-			existing.close();
-		}
+		// Render first, formatting may log
+		message.getLoggedMessage();
+
+		// Encode the log line
+		LibLogEncoder line = LibLogEncoder.local()//
+				.appendLine(message, debug)//
+				.append(LibLogEncoder.LINE_SEPARATOR);
 
-		// Return the new stream
-		return stream;
+		try {
+			write(message.getLoggedFacility(), line);
+		} finally {
+			line.release();
+		}
 	}
 
-	@Override
-	public void write(LibLogMessage message) {
+	/**
+	 * Write an encoded line to a facility log, adding the line separator.
+	 * 
+	 * @param facility the facility log to write to
+	 * @param line     the line, without a terminator
+	 * @param offset   offset of the line
+	 * @param length   length of the line
+	 */
+	public void writeLine(String facility, byte[] line, int offset, int length) {
 
-		// Get the output stream
-		String facility = message.getLoggedFacility();
-		PrintWriter out = logFiles.get(facility);
-		out = (out != null) ? out : newLog(facility);
+		LibLogEncoder encoded = LibLogEncoder.local()//
+				.append(line, offset, length)//
+				.append(LibLogEncoder.LINE_SEPARATOR);
+
+		try {
+			write(facility, encoded);
+		} finally {
+			encoded.release();
+		}
+	}
 
-		// Build the log line
-		String logLine = (debug) ? //
-				message.buildDebugLine() : message.buildLogLine();
+	private void write(String facility, LibLogEncoder line) {
+		try {
 
-		// Write to disk
-		synchronized (out) {
-			out.println(logLine);
+			// Buffer the line, reopening the file if it was closed
+			LibLogFileChannel out;
+			while (!(out = logFiles.get(facility)).write(line.array(), 0, line.size())) {
+				logFiles.invalidate(facility, out);
+			}
+			metrics.bytes(line.size());
+			flushLater();
+		} catch (IOException e) {
+			metrics.error();
+			e.printStackTrace(System.err);
 		}
 	}
 
 	@Override
 	public void shutdown() {
-		for (Map.Entry<String, PrintWriter> entry : logFiles.entrySet()) {
-			entry.getValue().close();
-			logFiles.remove(entry.getKey());
+		flusher.shutdown();
+		ScheduledFuture<?> pending = flushTask;
+		if (pending != null) {
+			pending.cancel(false);
 		}
-	}
 
-	private static long timeUntilRotate() {
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// Already shutting down
+		}
 
-		Duration untilMidnight = Duration.between(LocalDateTime.now(),
-				LocalDateTime.now().plusDays(1).toLocalDate().atStartOfDay());
-		return untilMidnight.toMillis();
+		logFiles.closeAll();
 	}
 }
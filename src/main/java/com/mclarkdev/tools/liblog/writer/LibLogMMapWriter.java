@@ -0,0 +1,146 @@
+package com.mclarkdev.tools.liblog.writer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+
+import com.mclarkdev.tools.liblog.LibLog;
+import com.mclarkdev.tools.liblog.lib.LibLogEncoder;
+import com.mclarkdev.tools.liblog.lib.LibLogHandleCache;
+import com.mclarkdev.tools.liblog.lib.LibLogMappedFile;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage;
+import com.mclarkdev.tools.liblog.lib.LibLogWriter;
+
+/**
+ * LibLog // LibLogMMapWriter
+ * 
+ * Writes messages to memory mapped log files.
+ * 
+ * Each facility is written to a series of preallocated segments. (?segment=bytes)
+ * Writeback is left to the operating system, lines survive a crash of the
+ * application but not of the machine.
+ * 
+ * At most maxOpen logs are held open, the least recently used are closed and
+ * start a new segment on the next write. (?maxOpen=64)
+ */
+public class LibLogMMapWriter extends LibLogWriter {
+
+	public static String scheme() {
+		return "mmap";
+	}
+
+	private final File logDir;
+	private final String logPath;
+
+	private final int segmentSize;
+
+	private final LibLogHandleCache<LibLogMappedFile> logFiles;
+
+	private final Thread shutdownHook = new Thread() {
+		public void run() {
+			closeOnExit();
+		}
+	};
+
+	public LibLogMMapWriter(URI uri) {
+		super(uri);
+
+		String dir = uri.getPath();
+
+		this.logPath = (dir.equals("/") ? "logs" : dir);
+
+		this.logDir = (new File(logPath));
+
+		long segment = param("segment", 64 * 1024 * 1024);
+		if (segment < LibLogMappedFile.MIN_SEGMENT || segment > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid segment size: " + segment);
+		}
+		this.segmentSize = (int) segment;
+
+		this.logFiles = new LibLogHandleCache<>((int) param("maxOpen", 64), //
+				(facility) -> new LibLogMappedFile(logDir, facility, segmentSize));
+	}
+
+	@Override
+	public void setup() {
+
+		logDir.mkdirs();
+
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	public final File getLogDir() {
+
+		return logDir;
+	}
+
+	/**
+	 * Returns the cache of open logs.
+	 * 
+	 * @return the open logs
+	 */
+	public final LibLogHandleCache<LibLogMappedFile> getLogFiles() {
+
+		return logFiles;
+	}
+
+	public void closeLog(String facility) {
+
+		logFiles.remove(facility);
+	}
+
+	public void closeLogs() {
+
+		logFiles.closeAll();
+	}
+
+	private void closeOnExit() {
+
+		// Write anything still queued for the writers
+		LibLog.cfg().disableAsync();
+
+		// Truncate the open segments
+		closeLogs();
+	}
+
+	@Override
+	public void write(LibLogMessage message) {
+
+		// Render first, formatting may log
+		message.getLoggedMessage();
+
+		// Encode the log line
+		LibLogEncoder line = LibLogEncoder.local()//
+				.appendLine(message, debug)//
+				.append(LibLogEncoder.LINE_SEPARATOR);
+
+		String facility = message.getLoggedFacility();
+
+		try {
+
+			// Copy the line, replacing the log if it was closed
+			LibLogMappedFile log;
+			while (!(log = logFiles.get(facility)).write(line.array(), 0, line.size())) {
+				logFiles.invalidate(facility, log);
+			}
+			metrics.bytes(line.size());
+		} catch (IOException e) {
+			metrics.error();
+			e.printStackTrace(System.err);
+		} finally {
+			line.release();
+		}
+	}
+
+	@Override
+	public void shutdown() {
+
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// Already shutting down
+		}
+
+		closeLogs();
+	}
+}
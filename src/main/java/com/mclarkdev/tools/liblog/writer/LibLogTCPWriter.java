@@ -24,4 +24,13 @@ public class LibLogTCPWriter extends LibLogCachedLogWriter {
 			throws UnknownHostException, SocketException {
 		super(uri, new LibLogTCPStream(uri));
 	}
+
+	/**
+	 * Returns the TCP stream, with its compression counters.
+	 * 
+	 * @return the log stream
+	 */
+	public LibLogTCPStream getStream() {
+		return (LibLogTCPStream) stream;
+	}
 }
@@ -4,17 +4,34 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import com.mclarkdev.tools.liblog.lib.LibLogBinaryEncoder;
+import com.mclarkdev.tools.liblog.lib.LibLogEncoder;
 import com.mclarkdev.tools.liblog.lib.LibLogMessage;
+import com.mclarkdev.tools.liblog.lib.LibLogScheduler;
 import com.mclarkdev.tools.liblog.lib.LibLogWriter;
 
 /**
  * LibLog // LibLogUDPWriter
  * 
  * Writes log messages to a UDP server.
+ * 
+ * In batch mode newline terminated lines are packed into datagrams of up to
+ * batch bytes, sent when full or after the linger time. Lines too long for a
+ * datagram are split or truncated. (?batch=1400, ?linger=ms,
+ * ?oversize=split|truncate)
+ * 
+ * With ?format=binary messages are sent as {@link LibLogBinaryEncoder} frames,
+ * each datagram carrying its own names so it decodes alone. Frames are not
+ * split, one larger than a batch is sent in a datagram of its own.
  */
 public class LibLogUDPWriter extends LibLogWriter {
 
@@ -27,42 +44,273 @@ public class LibLogUDPWriter extends LibLogWriter {
 	private final int logPort;
 	private final InetAddress logAddr;
 
+	// Reusable packet per sending thread
+	private final ThreadLocal<DatagramPacket> packets = new ThreadLocal<DatagramPacket>() {
+		protected DatagramPacket initialValue() {
+			return new DatagramPacket(new byte[0], 0, logAddr, logPort);
+		}
+	};
+
+	// Binary encoder per sending thread
+	private final ThreadLocal<LibLogBinaryEncoder> binaries = new ThreadLocal<LibLogBinaryEncoder>() {
+		protected LibLogBinaryEncoder initialValue() {
+			return new LibLogBinaryEncoder();
+		}
+	};
+
+	private final boolean binary;
+
+	// Batch mode
+	private final int batchSize;
+	private final long linger;
+	private final boolean truncate;
+
+	private InetSocketAddress batchTarget;
+	private DatagramChannel batchChannel;
+	private ByteBuffer batch;
+
+	// Sends a started batch, under the batch lock
+	private ScheduledFuture<?> lingerTask;
+
+	// Binary batches, under the batch lock
+	private LibLogBinaryEncoder batchBinary;
+	private LibLogEncoder batchFrame;
+
 	public LibLogUDPWriter(URI uri) throws UnknownHostException, SocketException {
 		super(uri);
 
 		this.logPort = uri.getPort();
 		this.logAddr = InetAddress.getByName(uri.getHost());
 
+		this.batchSize = (int) param("batch", 0);
+		if (batchSize != 0 && batchSize < 64) {
+			throw new IllegalArgumentException("Invalid UDP batch size: " + batchSize);
+		}
+		this.linger = param("linger", 5);
+
+		String oversize = param("oversize", "split");
+		if (!oversize.equals("split") && !oversize.equals("truncate")) {
+			throw new IllegalArgumentException("Unknown oversize policy: " + oversize);
+		}
+		this.truncate = oversize.equals("truncate");
+
+		String format = param("format", "text");
+		if (!format.equals("text") && !format.equals("binary")) {
+			throw new IllegalArgumentException("Unknown wire format: " + format);
+		}
+		this.binary = format.equals("binary");
+
 		this.logSocket = new DatagramSocket();
 	}
 
 	@Override
 	public void setup() {
+		if (batchSize <= 0) {
+			return;
+		}
+
+		try {
+			batchTarget = new InetSocketAddress(logAddr, logPort);
+			batchChannel = DatagramChannel.open();
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to open UDP channel.", e);
+		}
+		batch = ByteBuffer.allocateDirect(batchSize);
+
+		if (binary) {
+			batchBinary = new LibLogBinaryEncoder();
+			batchFrame = new LibLogEncoder(1024);
+		}
 	}
 
 	@Override
 	public void write(LibLogMessage message) {
 
-		// Build the log line
-		String logLine = (debug) ? //
-				message.buildDebugLine() : message.buildLogLine();
-		byte[] bytes = logLine.getBytes();
+		// Render first, formatting may log
+		message.getLoggedMessage();
 
-		// Assemble UDP packet
-		DatagramPacket datagram = new DatagramPacket(//
-				bytes, bytes.length, logAddr, logPort);
+		if (binary && batch != null) {
+			appendFrames(message);
+			return;
+		}
 
+		// Encode the log line
+		LibLogEncoder line = LibLogEncoder.local();
 		try {
+			if (binary) {
+				LibLogBinaryEncoder frames = binaries.get();
+				frames.reset();
+				frames.append(line, message, debug);
+			} else {
+				line.appendLine(message, debug);
+			}
+
+			if (batch != null) {
+				append(line.array(), line.size());
+				return;
+			}
+
+			// Assemble UDP packet
+			DatagramPacket datagram = packets.get();
+			datagram.setData(line.array(), 0, line.size());
 
 			// Write to UDP stream
 			logSocket.send(datagram);
+			metrics.bytes(datagram.getLength());
 		} catch (IOException e) {
+			metrics.error();
 			e.printStackTrace(System.err);
+		} finally {
+			line.release();
 		}
 	}
 
+	/**
+	 * Send any lines waiting in the current datagram.
+	 */
+	public void flush() {
+		if (batch == null) {
+			return;
+		}
+
+		synchronized (batch) {
+			send();
+		}
+	}
+
+	private void append(byte[] line, int length) {
+		synchronized (batch) {
+
+			// Send the datagram if the line does not fit
+			if (length + 1 > batch.remaining()) {
+				send();
+			}
+
+			int offset = 0;
+			while (length - offset + 1 > batch.remaining()) {
+
+				// Fill a whole datagram with part of the line
+				int part = boundary(line, offset, batch.remaining() - 1);
+				batch.put(line, offset, part).put((byte) '\n');
+				send();
+				offset += part;
+
+				if (truncate) {
+					return;
+				}
+			}
+
+			batch.put(line, offset, length - offset).put((byte) '\n');
+			linger();
+		}
+	}
+
+	private void appendFrames(LibLogMessage message) {
+
+		// Format outside of the lock
+		message.getLoggedMessage();
+
+		synchronized (batch) {
+
+			// Each datagram starts a new dictionary
+			if (batch.position() == 0) {
+				batchBinary.reset();
+			}
+
+			// Encode the frames, starting a new datagram if they do not fit
+			batchFrame.clear();
+			batchBinary.append(batchFrame, message, debug);
+			if (batchFrame.size() > batch.remaining() && batch.position() > 0) {
+				send();
+				batchBinary.reset();
+				batchFrame.clear();
+				batchBinary.append(batchFrame, message, debug);
+			}
+
+			if (batchFrame.size() <= batch.remaining()) {
+				batch.put(batchFrame.array(), 0, batchFrame.size());
+				linger();
+				return;
+			}
+
+			// Too large for a batch, send it alone
+			sendFrames(batchFrame);
+			batchBinary.reset();
+		}
+	}
+
+	private void linger() {
+
+		// Send the batch after the linger time, unless filled first
+		if (lingerTask == null && batch.position() > 0) {
+			lingerTask = LibLogScheduler.schedule(this::flush, linger, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void sendFrames(LibLogEncoder frames) {
+
+		// An interrupt would close the channel, hold it until finished
+		boolean interrupted = Thread.interrupted();
+		try {
+			metrics.bytes(batchChannel.send(frames.flip(), batchTarget));
+		} catch (IOException e) {
+			metrics.error();
+			e.printStackTrace(System.err);
+		} finally {
+			frames.clear();
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void send() {
+		if (lingerTask != null) {
+			lingerTask.cancel(false);
+			lingerTask = null;
+		}
+
+		if (batch.position() == 0) {
+			return;
+		}
+
+		// An interrupt would close the channel, hold it until finished
+		boolean interrupted = Thread.interrupted();
+		try {
+			batch.flip();
+			metrics.bytes(batchChannel.send(batch, batchTarget));
+		} catch (IOException e) {
+			metrics.error();
+			e.printStackTrace(System.err);
+		} finally {
+			batch.clear();
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static int boundary(byte[] line, int offset, int length) {
+
+		// Do not split a UTF-8 sequence
+		int end = offset + length;
+		while (end > offset && (line[end] & 0xC0) == 0x80) {
+			end--;
+		}
+		return (end > offset) ? (end - offset) : length;
+	}
+
 	@Override
 	public void shutdown() {
+		if (batch != null) {
+			flush();
+
+			try {
+				batchChannel.close();
+			} catch (IOException e) {
+			}
+		}
+
 		this.logSocket.close();
 		this.logSocket = null;
 		System.gc();
@@ -0,0 +1,50 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.lang.StackWalker.StackFrame;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import com.mclarkdev.tools.liblog.LibLog;
+
+/**
+ * LibLog // LibLogCallerLocator
+ * 
+ * Finds the first stack frame outside of the logger.
+ * 
+ * Walks frames lazily, stopping at the caller rather than materializing the
+ * whole stack.
+ */
+final class LibLogCallerLocator {
+
+	private static final StackWalker WALKER = StackWalker.getInstance();
+
+	private static final Function<Stream<StackFrame>, Optional<StackFrame>> FIRST_EXTERNAL = //
+			(frames) -> frames.filter((frame) -> !internal(frame.getClassName())).findFirst();
+
+	private LibLogCallerLocator() {
+	}
+
+	/**
+	 * Returns the location which invoked the log operation.
+	 * 
+	 * @return the calling stack frame, or null if not found
+	 */
+	static StackTraceElement locate() {
+
+		Optional<StackFrame> frame = WALKER.walk(FIRST_EXTERNAL);
+		return (frame.isPresent()) ? frame.get().toStackTraceElement() : null;
+	}
+
+	/**
+	 * Returns true if the class is part of the logging call path.
+	 * 
+	 * @param className the frame class name
+	 * @return frame is internal to the logger
+	 */
+	static boolean internal(String className) {
+		return className.equals(LibLog.class.getName()) || //
+				className.equals(LibLogMessage.class.getName()) || //
+				className.equals(LibLogCallerLocator.class.getName());
+	}
+}
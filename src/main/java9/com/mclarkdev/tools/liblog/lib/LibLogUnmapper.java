@@ -0,0 +1,55 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * LibLog // LibLogUnmapper
+ * 
+ * Releases a file mapping without waiting for the buffer to be collected.
+ * 
+ * The buffer must not be used again once unmapped.
+ */
+final class LibLogUnmapper {
+
+	// Unsafe.invokeCleaner(ByteBuffer), or null
+	private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+	private LibLogUnmapper() {
+	}
+
+	/**
+	 * Unmap a buffer, leaving it to the collector if not supported.
+	 * 
+	 * @param buffer the mapped buffer
+	 */
+	static void unmap(MappedByteBuffer buffer) {
+		if (INVOKE_CLEANER == null) {
+			return;
+		}
+
+		try {
+			INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+		} catch (Throwable e) {
+			// Unmapped when collected
+		}
+	}
+
+	private static MethodHandle invokeCleaner() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+
+			return MethodHandles.lookup().findVirtual(unsafeClass, "invokeCleaner", //
+					MethodType.methodType(void.class, ByteBuffer.class)).bindTo(field.get(null));
+		} catch (Exception e) {
+			// Unmapped when collected
+			return null;
+		}
+	}
+}
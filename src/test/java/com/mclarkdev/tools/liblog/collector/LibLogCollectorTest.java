@@ -0,0 +1,110 @@
+package com.mclarkdev.tools.liblog.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mclarkdev.tools.liblog.lib.LibLogMessage;
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
+import com.mclarkdev.tools.liblog.lib.LibLogWriter;
+import com.mclarkdev.tools.liblog.writer.LibLogFileWriter;
+import com.mclarkdev.tools.liblog.writer.LibLogTCPWriter;
+import com.mclarkdev.tools.liblog.writer.LibLogUDPWriter;
+
+/**
+ * LibLog // LibLogCollectorTest
+ * 
+ * Sends messages through the network writers to a collector, and reads them
+ * back from the facility files.
+ */
+public class LibLogCollectorTest {
+
+	private static final int MESSAGES = 200;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private LibLogFileWriter files;
+
+	private LibLogCollector collector;
+
+	@Before
+	public void start() throws Exception {
+		files = new LibLogFileWriter(URI.create("file:" + folder.getRoot().getPath() + "/"));
+		files.setup();
+		collector = new LibLogCollector(files, 2);
+	}
+
+	@After
+	public void stop() {
+		collector.close();
+		files.shutdown();
+	}
+
+	@Test
+	public void tcpText() throws Exception {
+		send("tcp", "", "tcptext");
+	}
+
+	@Test
+	public void tcpBinary() throws Exception {
+		send("tcp", "?format=binary", "tcpbinary");
+	}
+
+	@Test
+	public void tcpDeflate() throws Exception {
+		send("tcp", "?compress=deflate", "tcpdeflate");
+	}
+
+	@Test
+	public void udpBatch() throws Exception {
+		send("udp", "?batch=1400", "udpbatch");
+	}
+
+	private void send(String scheme, String query, String facility) throws Exception {
+		InetSocketAddress address = collector.listen(URI.create(scheme + "://127.0.0.1:0" + query));
+		URI target = URI.create(scheme + "://127.0.0.1:" + address.getPort() + "/" + query);
+
+		LibLogWriter writer = scheme.equals("tcp") ? //
+				new LibLogTCPWriter(target) : new LibLogUDPWriter(target);
+		writer.setup();
+		try {
+			for (int x = 0; x < MESSAGES; x++) {
+				writer.write(new LibLogMessage(LogLevel.INFO, facility, "message " + x, null, false));
+			}
+		} finally {
+			writer.shutdown();
+		}
+
+		// Wait for the collector to write every line
+		long deadline = System.currentTimeMillis() + 10000;
+		while (collector.getLinesWritten() < MESSAGES && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(MESSAGES, collector.getLinesWritten());
+		files.flushLogs();
+
+		File[] logs = folder.getRoot().listFiles((dir, name) -> name.endsWith("-" + facility + ".log"));
+		assertEquals(1, logs.length);
+
+		List<String> lines = Files.readAllLines(logs[0].toPath(), StandardCharsets.UTF_8);
+		assertEquals(MESSAGES, lines.size());
+		for (int x = 0; x < MESSAGES; x++) {
+			String line = lines.get(x);
+			assertTrue(line, line.contains("[ " + facility + " ]"));
+			assertTrue(line, line.endsWith(" - message " + x));
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.mclarkdev.tools.liblog.lib.LibLogMessage.LogLevel;
+
+/**
+ * LibLog // LibLogBinaryEncoderTest
+ * 
+ * Round trips messages through the binary encoder and reader.
+ */
+public class LibLogBinaryEncoderTest {
+
+	@Test
+	public void roundTrip() throws Exception {
+		LibLogBinaryEncoder encoder = new LibLogBinaryEncoder();
+		LibLogEncoder out = new LibLogEncoder(1024);
+
+		LibLogMessage message = new LibLogMessage(1000, LogLevel.WARN, "db", "connect failed", "com.example.Db", 42);
+		encoder.append(out, message, true);
+		encoder.append(out, message, true);
+
+		List<LibLogMessage> decoded = LibLogBinaryReader.decode(out.array(), 0, out.size());
+		assertEquals(2, decoded.size());
+		for (LibLogMessage read : decoded) {
+			assertEquals(1000, read.getTime());
+			assertEquals(LogLevel.WARN, read.getLoggedLevel());
+			assertEquals("db", read.getLoggedFacility());
+			assertEquals("connect failed", read.getLoggedMessage());
+			assertEquals("com.example.Db", read.getLoggedClassName());
+			assertEquals(42, read.getLoggedLineNumber());
+		}
+	}
+
+	@Test
+	public void roundTripAcrossReset() throws Exception {
+		LibLogBinaryEncoder encoder = new LibLogBinaryEncoder();
+		LibLogEncoder out = new LibLogEncoder(1024 * 1024);
+
+		// One name first, so a message lands with a single name left
+		encoder.append(out, new LibLogMessage(0, LogLevel.INFO, "first", "first", null, -1), false);
+
+		int count = LibLogBinaryEncoder.MAX_NAMES;
+		for (int x = 0; x < count; x++) {
+			encoder.append(out, new LibLogMessage(x, LogLevel.INFO, //
+					"facility" + x, "message" + x, "com.example.Class" + x, x), true);
+		}
+
+		List<LibLogMessage> decoded = LibLogBinaryReader.decode(out.array(), 0, out.size());
+		assertEquals(count + 1, decoded.size());
+		assertEquals("first", decoded.get(0).getLoggedFacility());
+		for (int x = 0; x < count; x++) {
+			LibLogMessage read = decoded.get(x + 1);
+			assertEquals(x, read.getTime());
+			assertEquals("facility" + x, read.getLoggedFacility());
+			assertEquals("com.example.Class" + x, read.getLoggedClassName());
+			assertEquals("message" + x, read.getLoggedMessage());
+			assertEquals(x, read.getLoggedLineNumber());
+		}
+	}
+}
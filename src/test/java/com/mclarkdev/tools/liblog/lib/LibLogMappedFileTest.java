@@ -0,0 +1,71 @@
+package com.mclarkdev.tools.liblog.lib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * LibLog // LibLogMappedFileTest
+ * 
+ * Reopens mapped logs, as left by a clean close and by a crash.
+ */
+public class LibLogMappedFileTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void resumeAfterClose() throws Exception {
+		File dir = folder.getRoot();
+
+		LibLogMappedFile log = new LibLogMappedFile(dir, "test", LibLogMappedFile.MIN_SEGMENT);
+		write(log, "first\n");
+		log.close();
+
+		log = new LibLogMappedFile(dir, "test", LibLogMappedFile.MIN_SEGMENT);
+		write(log, "second\n");
+		log.close();
+
+		assertEquals("first\nsecond\n", read(segment(dir, 0)));
+		assertFalse(segment(dir, 1).exists());
+	}
+
+	@Test
+	public void resumeAfterCrash() throws Exception {
+		File dir = folder.getRoot();
+
+		// A segment left at its preallocated size, zero-filled after the lines
+		byte[] crashed = new byte[LibLogMappedFile.MIN_SEGMENT];
+		byte[] lines = "first\nsecond\n".getBytes(StandardCharsets.UTF_8);
+		System.arraycopy(lines, 0, crashed, 0, lines.length);
+		Files.write(segment(dir, 0).toPath(), crashed);
+
+		LibLogMappedFile log = new LibLogMappedFile(dir, "test", LibLogMappedFile.MIN_SEGMENT);
+		write(log, "third\n");
+		log.close();
+
+		assertEquals("first\nsecond\nthird\n", read(segment(dir, 0)));
+		assertFalse(segment(dir, 1).exists());
+	}
+
+	private static void write(LibLogMappedFile log, String line) throws Exception {
+		byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+		log.write(bytes, 0, bytes.length);
+	}
+
+	private static String read(File file) throws Exception {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	private static File segment(File dir, int sequence) {
+		String day = LibLogTimestamp.format(LibLogTimestamp.now()).substring(0, 8);
+		return new File(dir, String.format("%s-test.%d.log", day, sequence));
+	}
+}